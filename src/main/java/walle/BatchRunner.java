@@ -0,0 +1,96 @@
+package walle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Runs commands from a file or standard input without starting the GUI, e.g. to import or
+ * migrate a large number of tasks. Each line is one command, answered on the output in
+ * order. Saving is deferred through {@link DeferredStorage}: the changes are written as one
+ * batch every {@code checkpointInterval} commands and once at the end.
+ */
+public class BatchRunner {
+
+    static final int DEFAULT_CHECKPOINT_INTERVAL = 10_000;
+    private static final String SAVE_FILE_PATH = "data/walle.txt";
+
+    private final Walle walle;
+    private final DeferredStorage storage;
+    private final int checkpointInterval;
+
+    /**
+     * Creates a runner on top of the given backend.
+     *
+     * @param backend Backend the tasks are loaded from and saved to.
+     * @param checkpointInterval Number of commands between saves, or 0 to save only at the end.
+     */
+    public BatchRunner(Storage backend, int checkpointInterval) {
+        assert checkpointInterval >= 0 : "checkpoint interval must not be negative";
+        this.storage = new DeferredStorage(backend);
+        this.walle = new Walle(storage);
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Runs every command from the input until it ends or a {@code bye} command, then saves.
+     * Blank lines are skipped.
+     *
+     * @param in Commands, one per line.
+     * @param out Where the responses go, one after another; flushed at each checkpoint.
+     * @return Number of commands run.
+     * @throws IOException If reading the commands or writing the responses fails.
+     * @throws WalleException If the tasks cannot be saved.
+     */
+    public int run(BufferedReader in, Writer out) throws IOException, WalleException {
+        int count = 0;
+        String line;
+        while (!walle.isExit() && (line = in.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            out.write(walle.getResponse(line));
+            out.write('\n');
+            count++;
+            if (checkpointInterval > 0 && count % checkpointInterval == 0) {
+                storage.flush();
+                out.flush();
+            }
+        }
+        if (!walle.isExit()) {
+            // bye has already closed the storage
+            storage.close();
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Runs the commands in the given file, or in standard input if the path is {@code -},
+     * against the default save file and writes the responses to standard output.
+     *
+     * @param path Path of the command file, or {@code -}.
+     * @param checkpointInterval Number of commands between saves, or 0 to save only at the end.
+     * @return Exit status for the process: 0 on success, 1 on failure.
+     */
+    static int runFromPath(String path, int checkpointInterval) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try (BufferedReader in = path.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            new BatchRunner(Storage.open(SAVE_FILE_PATH), checkpointInterval).run(in, out);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Oops — couldn't run the batch: " + e.getMessage());
+        } catch (WalleException e) {
+            System.err.println(e.getMessage());
+        }
+        return 1;
+    }
+}
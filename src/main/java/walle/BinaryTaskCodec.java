@@ -0,0 +1,186 @@
+package walle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Encodes and decodes tasks in the binary save format.
+ * Layout: the magic bytes {@code WALB}, a version byte, since version 3 the int highest task
+ * ID ever stored, then one record per task:
+ * <ul>
+ *   <li>type byte ({@code T}, {@code D} or {@code E}) and a flags byte (bit 0 = done),</li>
+ *   <li>since version 2, the int task ID (0 if none),</li>
+ *   <li>an int byte length followed by the UTF-8 description,</li>
+ *   <li>for deadlines, {@code by} as epoch seconds; for events, {@code from} and {@code to}.</li>
+ * </ul>
+ * All numbers are big-endian. Date/times are stored as UTC-based epoch seconds of the local
+ * date/time, so no time-zone conversion takes place.
+ */
+final class BinaryTaskCodec {
+
+    static final byte[] MAGIC = {'W', 'A', 'L', 'B'};
+    static final byte VERSION = 3;
+
+    private static final byte FIRST_VERSION_WITH_IDS = 2;
+    private static final byte FIRST_VERSION_WITH_HIGH_WATER = 3;
+
+    private static final byte TODO = 'T';
+    private static final byte DEADLINE = 'D';
+    private static final byte EVENT = 'E';
+    private static final int DONE_FLAG = 1;
+
+    private BinaryTaskCodec() {}
+
+    /**
+     * Returns whether the given file header starts with the binary format's magic bytes.
+     *
+     * @param header First bytes of the save file (may be shorter than the magic).
+     * @return True if the file is in the binary format; false otherwise.
+     */
+    static boolean hasMagic(byte[] header) {
+        if (header.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the header and every task to the given stream.
+     *
+     * @param tasks Tasks to encode.
+     * @param idHighWater Highest task ID ever stored, including deleted tasks.
+     * @param out Destination stream; it is flushed but not closed.
+     * @throws IOException If writing fails.
+     */
+    static void write(List<Task> tasks, int idHighWater, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(idHighWater);
+        for (Task t : tasks) {
+            writeTask(t, data);
+        }
+        data.flush();
+    }
+
+    private static void writeTask(Task t, DataOutputStream data) throws IOException {
+        byte type = t instanceof Deadline ? DEADLINE : t instanceof Event ? EVENT : TODO;
+        byte[] desc = t.getDescription().getBytes(StandardCharsets.UTF_8);
+
+        data.writeByte(type);
+        data.writeByte(t.isDone() ? DONE_FLAG : 0);
+        data.writeInt(t.getId());
+        data.writeInt(desc.length);
+        data.write(desc);
+
+        if (type == DEADLINE) {
+            data.writeLong(toEpochSecond(((Deadline) t).getBy()));
+        } else if (type == EVENT) {
+            Event e = (Event) t;
+            data.writeLong(toEpochSecond(e.getFrom()));
+            data.writeLong(toEpochSecond(e.getTo()));
+        }
+    }
+
+    /**
+     * Decodes every task from the stream, which must be positioned at the start of the file.
+     * Records are decoded one at a time, so files of any size can be read without holding
+     * their bytes in memory.
+     *
+     * @param in Stream over a complete binary save file; it is not closed.
+     * @param size Length of the file in bytes, used to reject impossible description lengths.
+     * @param idHighWater Receives the highest task ID ever stored, if the file records it.
+     * @return Decoded tasks in file order.
+     * @throws IOException If reading fails.
+     * @throws WalleException If the header or any record is invalid.
+     */
+    static ArrayList<Task> read(InputStream in, long size, IntConsumer idHighWater)
+            throws IOException, WalleException {
+        DataInputStream data = new DataInputStream(in);
+        ArrayList<Task> tasks = new ArrayList<>();
+        try {
+            for (byte b : MAGIC) {
+                if (data.readByte() != b) {
+                    throw new WalleException("Invalid binary save file header.");
+                }
+            }
+            byte version = data.readByte();
+            if (version < 1 || version > VERSION) {
+                throw new WalleException("Unsupported binary save file version: " + version);
+            }
+            if (version >= FIRST_VERSION_WITH_HIGH_WATER) {
+                idHighWater.accept(data.readInt());
+            }
+            boolean hasIds = version >= FIRST_VERSION_WITH_IDS;
+            int type;
+            while ((type = data.read()) != -1) {
+                tasks.add(readTask(data, (byte) type, hasIds, size, tasks.size() + 1));
+            }
+            return tasks;
+
+        } catch (EOFException e) {
+            throw new WalleException("Truncated binary save file at task " + (tasks.size() + 1));
+        }
+    }
+
+    private static Task readTask(DataInputStream data, byte type, boolean hasIds, long size, int recordNo)
+            throws IOException, WalleException {
+        boolean done = (data.readByte() & DONE_FLAG) != 0;
+        int id = hasIds ? data.readInt() : 0;
+        int length = data.readInt();
+        if (length <= 0 || length > size) {
+            throw new WalleException("Invalid description length in binary task " + recordNo);
+        }
+        byte[] descBytes = new byte[length];
+        data.readFully(descBytes);
+        String desc = new String(descBytes, StandardCharsets.UTF_8);
+
+        Task t;
+        switch (type) {
+        case TODO:
+            t = new Todo(desc);
+            break;
+        case DEADLINE:
+            t = new Deadline(desc, fromEpochSecond(data.readLong()));
+            break;
+        case EVENT:
+            LocalDateTime from = fromEpochSecond(data.readLong());
+            t = new Event(desc, from, fromEpochSecond(data.readLong()));
+            break;
+        default:
+            throw new WalleException("Unknown task type in binary task " + recordNo + ": " + type);
+        }
+
+        if (done) {
+            t.markDone();
+        }
+        if (id > 0) {
+            t.assignId(id);
+        }
+        return t;
+    }
+
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime fromEpochSecond(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,18 @@
+package walle;
+
+/**
+ * One kind of user command, e.g. {@code mark}: parses the input line it was given and
+ * carries it out against the task list.
+ */
+@FunctionalInterface
+interface Command {
+
+    /**
+     * Parses and runs the command.
+     *
+     * @param input Raw user input, already matched to this command.
+     * @return Response text to be shown to the user.
+     * @throws WalleException If the input is invalid or the command cannot be carried out.
+     */
+    String execute(String input) throws WalleException;
+}
@@ -0,0 +1,82 @@
+package walle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Finds the command an input line is meant for. Commands are filed under their first word,
+ * so dispatch is one hash lookup on that word followed by a check of the few forms sharing
+ * it (e.g. {@code find} and {@code find -w}), however many commands there are.
+ */
+final class CommandRegistry {
+
+    private static final class Entry {
+        private final Predicate<String> matcher;
+        private final Command command;
+
+        private Entry(Predicate<String> matcher, Command command) {
+            this.matcher = matcher;
+            this.command = command;
+        }
+    }
+
+    private final HashMap<String, List<Entry>> byVerb = new HashMap<>();
+
+    /**
+     * Adds a command under the given first word. Forms of the same word are tried in the
+     * order they were registered, so more specific forms must come first.
+     *
+     * @param verb First word of the command, in lower case.
+     * @param matcher Whether an input starting with that word is this form of the command.
+     * @param command What to run for matching inputs.
+     */
+    void register(String verb, Predicate<String> matcher, Command command) {
+        assert verb.equals(verb.toLowerCase(Locale.ROOT)) : "verbs are looked up in lower case";
+        byVerb.computeIfAbsent(verb, v -> new ArrayList<>(1)).add(new Entry(matcher, command));
+    }
+
+    /**
+     * Returns the command the input is meant for.
+     *
+     * @param input Raw user input.
+     * @return The matching command, or null if there is none.
+     */
+    Command find(String input) {
+        List<Entry> entries = byVerb.get(verbOf(input));
+        if (entries == null) {
+            return null;
+        }
+        for (Entry e : entries) {
+            if (e.matcher.test(input)) {
+                return e.command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether any command is filed under the given first word.
+     *
+     * @param verb First word, in lower case.
+     * @return True if some command starts with that word; false otherwise.
+     */
+    boolean hasVerb(String verb) {
+        return byVerb.containsKey(verb);
+    }
+
+    // The first word of the input in lower case, skipping leading whitespace.
+    static String verbOf(String input) {
+        int start = 0;
+        while (start < input.length() && Character.isWhitespace(input.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < input.length() && !Character.isWhitespace(input.charAt(end))) {
+            end++;
+        }
+        return input.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+}
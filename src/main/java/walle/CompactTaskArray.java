@@ -0,0 +1,282 @@
+package walle;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of tasks stored column by column in primitive arrays: the type as a byte, the done
+ * flag as a bit, the ID as an int, dates as epoch minutes (UTC) and the description as UTF-8
+ * in one shared byte arena. That is about 30 bytes per task plus its description, against
+ * well over 100 for a {@link Task} object with its {@link LocalDateTime}s.
+ *
+ * {@link #get(int)} builds a fresh task from the columns on every call, so changes made to
+ * it only reach the list through {@link #set(int, Task)}. Dates keep minute precision,
+ * which is all that commands can enter. Tasks are matched by ID, not by identity.
+ */
+final class CompactTaskArray extends AbstractList<Task> implements RandomAccess {
+
+    private static final byte TODO = 0;
+    private static final byte DEADLINE = 1;
+    private static final byte EVENT = 2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private final BitSet done = new BitSet();
+    private int[] ids = new int[INITIAL_CAPACITY];
+    // Deadline due time or event start, then event end, in epoch minutes
+    private long[] starts = new long[INITIAL_CAPACITY];
+    private long[] ends = new long[INITIAL_CAPACITY];
+    private int[] descOffsets = new int[INITIAL_CAPACITY];
+    private int[] descLengths = new int[INITIAL_CAPACITY];
+    private byte[] arena = new byte[INITIAL_CAPACITY * 32];
+    private int arenaSize;
+    private int arenaGarbage;
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size);
+        String desc = new String(arena, descOffsets[index], descLengths[index], StandardCharsets.UTF_8);
+        Task t;
+        switch (types[index]) {
+        case DEADLINE:
+            t = new Deadline(desc, toTime(starts[index]));
+            break;
+        case EVENT:
+            t = new Event(desc, toTime(starts[index]), toTime(ends[index]));
+            break;
+        default:
+            t = new Todo(desc);
+            break;
+        }
+        if (done.get(index)) {
+            t.markDone();
+        }
+        t.assignId(ids[index]);
+        return t;
+    }
+
+    @Override
+    public Task set(int index, Task t) {
+        Task old = get(index);
+        byte[] desc = t.getDescription().getBytes(StandardCharsets.UTF_8);
+        int offset = descOffsets[index];
+        if (Arrays.equals(desc, 0, desc.length, arena, offset, offset + descLengths[index])) {
+            desc = null; // unchanged, e.g. when writing back a new status
+        } else {
+            arenaGarbage += descLengths[index];
+        }
+        write(index, t, desc);
+        return old;
+    }
+
+    @Override
+    public void add(int index, Task t) {
+        checkIndex(index, size + 1);
+        if (size == types.length) {
+            grow();
+        }
+        int tail = size - index;
+        System.arraycopy(types, index, types, index + 1, tail);
+        System.arraycopy(ids, index, ids, index + 1, tail);
+        System.arraycopy(starts, index, starts, index + 1, tail);
+        System.arraycopy(ends, index, ends, index + 1, tail);
+        System.arraycopy(descOffsets, index, descOffsets, index + 1, tail);
+        System.arraycopy(descLengths, index, descLengths, index + 1, tail);
+        if (index < size) {
+            shiftDone(index, size, 1);
+        }
+        size++;
+        write(index, t, t.getDescription().getBytes(StandardCharsets.UTF_8));
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task old = get(index);
+        arenaGarbage += descLengths[index];
+        int tail = size - index - 1;
+        System.arraycopy(types, index + 1, types, index, tail);
+        System.arraycopy(ids, index + 1, ids, index, tail);
+        System.arraycopy(starts, index + 1, starts, index, tail);
+        System.arraycopy(ends, index + 1, ends, index, tail);
+        System.arraycopy(descOffsets, index + 1, descOffsets, index, tail);
+        System.arraycopy(descLengths, index + 1, descLengths, index, tail);
+        shiftDone(index + 1, size, -1);
+        size--;
+        if (arenaGarbage > arenaSize / 2) {
+            compactArena();
+        }
+        modCount++;
+        return old;
+    }
+
+    /**
+     * Removes the tasks at the given positions, moving each remaining task at most once.
+     *
+     * @param positions 0-based positions, in increasing order.
+     * @return The removed tasks, in list order.
+     */
+    List<Task> removeAt(int[] positions) {
+        List<Task> removed = new ArrayList<>(positions.length);
+        if (positions.length == 0) {
+            return removed;
+        }
+        int next = 0;
+        int write = positions[0];
+        for (int read = write; read < size; read++) {
+            if (next < positions.length && positions[next] == read) {
+                removed.add(get(read));
+                arenaGarbage += descLengths[read];
+                next++;
+                continue;
+            }
+            types[write] = types[read];
+            ids[write] = ids[read];
+            starts[write] = starts[read];
+            ends[write] = ends[read];
+            descOffsets[write] = descOffsets[read];
+            descLengths[write] = descLengths[read];
+            done.set(write, done.get(read));
+            write++;
+        }
+        done.clear(write, size);
+        size = write;
+        if (arenaGarbage > arenaSize / 2) {
+            compactArena();
+        }
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        done.clear();
+        arenaSize = 0;
+        arenaGarbage = 0;
+        modCount++;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Task ? indexOfId(((Task) o).getId()) : -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns the 0-based position of the task with the given ID, scanning only the ID column.
+     *
+     * @return The position, or -1 if no task has that ID.
+     */
+    int indexOfId(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first position at or after {@code from} whose task has the given status,
+     * reading the done bits a word at a time.
+     *
+     * @return The position, or -1 if there is none.
+     */
+    int nextWithStatus(int from, boolean isDone) {
+        int next = isDone ? done.nextSetBit(from) : done.nextClearBit(from);
+        return next >= 0 && next < size ? next : -1;
+    }
+
+    private void write(int index, Task t, byte[] desc) {
+        ids[index] = t.getId();
+        done.set(index, t.isDone());
+        if (t instanceof Deadline) {
+            types[index] = DEADLINE;
+            starts[index] = toMinutes(((Deadline) t).getBy());
+        } else if (t instanceof Event) {
+            types[index] = EVENT;
+            starts[index] = toMinutes(((Event) t).getFrom());
+            ends[index] = toMinutes(((Event) t).getTo());
+        } else {
+            types[index] = TODO;
+        }
+        if (desc != null) {
+            descOffsets[index] = appendToArena(desc);
+            descLengths[index] = desc.length;
+        }
+    }
+
+    private int appendToArena(byte[] bytes) {
+        if (arenaSize + bytes.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        arenaSize += bytes.length;
+        return arenaSize - bytes.length;
+    }
+
+    // Copies the live descriptions to a fresh arena, dropping those of deleted tasks.
+    private void compactArena() {
+        byte[] fresh = new byte[Math.max(INITIAL_CAPACITY * 32, (arenaSize - arenaGarbage) * 2)];
+        int freshSize = 0;
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(arena, descOffsets[i], fresh, freshSize, descLengths[i]);
+            descOffsets[i] = freshSize;
+            freshSize += descLengths[i];
+        }
+        arena = fresh;
+        arenaSize = freshSize;
+        arenaGarbage = 0;
+    }
+
+    // Moves the done bits in [from, to) by the given distance.
+    private void shiftDone(int from, int to, int distance) {
+        BitSet moved = done.get(from, to);
+        done.clear(Math.min(from, from + distance), Math.max(to, to + distance));
+        for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+            done.set(from + distance + i);
+        }
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        descOffsets = Arrays.copyOf(descOffsets, capacity);
+        descLengths = Arrays.copyOf(descLengths, capacity);
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+        }
+    }
+
+    private static long toMinutes(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime toTime(long minutes) {
+        return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+    }
+}
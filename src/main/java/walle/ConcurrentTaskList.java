@@ -0,0 +1,595 @@
+package walle;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * A task list that can be read from any thread while one thread edits it.
+ *
+ * Writers take a single lock, apply the change to the underlying {@link TaskList} and then
+ * publish a new immutable {@link Snapshot} of the tasks through a volatile field. Readers of
+ * the whole list ({@code list}, plain {@code find}, saving) use the latest snapshot without
+ * locking, so persistence and rendering can run off the command thread and never see a
+ * half-applied change. Index-backed queries take the lock, as the indexes are not safe
+ * to read during a write.
+ *
+ * Snapshots hold copies of the tasks, made once per change: a mark copies one task, never
+ * the other tasks. The copies sit in chunks of a few hundred tasks, and a new snapshot
+ * shares every chunk the change did not touch with the previous one, so a change copies
+ * one chunk and the array of chunk references rather than all n task references.
+ *
+ * {@link Walle} keeps its tasks in this list, and hands snapshots to
+ * {@link Storage#compactAsync(List)}, whose background snapshot writer can then read them
+ * while later commands go on.
+ */
+public class ConcurrentTaskList extends TaskList {
+
+    /**
+     * The tasks as they were after one particular change.
+     * Neither the list nor its tasks may be modified.
+     */
+    public static final class Snapshot {
+        private final long version;
+        // Chunks of task copies in list order, and the number of tasks up to the end of each
+        private final Task[][] chunks;
+        private final int[] ends;
+        private final List<Task> view = new ChunkedView();
+        // Rendered on first use; racing readers may both render it, with the same result
+        private String displayString;
+
+        private Snapshot(long version, Task[][] chunks) {
+            this.version = version;
+            this.chunks = chunks;
+            this.ends = new int[chunks.length];
+            int total = 0;
+            for (int c = 0; c < chunks.length; c++) {
+                total += chunks[c].length;
+                ends[c] = total;
+            }
+        }
+
+        /**
+         * Returns the list version this snapshot was taken at, see {@link TaskList#getVersion()}.
+         *
+         * @return Snapshot version.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the tasks in list order.
+         *
+         * @return Read-only list of the tasks.
+         */
+        public List<Task> getTasks() {
+            return view;
+        }
+
+        /**
+         * Renders the tasks as {@link TaskList#toDisplayString()} does.
+         *
+         * @return Display string of all tasks.
+         */
+        public String toDisplayString() {
+            if (displayString == null) {
+                displayString = TaskList.toDisplayString(view);
+            }
+            return displayString;
+        }
+
+        /**
+         * Writes the tasks out as {@link TaskList#writeDisplayTo(Appendable)} does.
+         *
+         * @param out Where the text goes.
+         * @throws IOException If writing to the output fails.
+         */
+        public void writeDisplayTo(Appendable out) throws IOException {
+            TaskList.writeDisplayTo(view, out);
+        }
+
+        /**
+         * Renders one page of the tasks as {@link TaskList#pageToDisplayString(int, int)} does.
+         *
+         * @param offset Number of tasks to skip, from the start of the list.
+         * @param limit Maximum number of tasks shown.
+         * @return Display string of the tasks on the page.
+         */
+        public String pageToDisplayString(int offset, int limit) {
+            return TaskList.pageToDisplayString(view, offset, limit);
+        }
+
+        /**
+         * Finds tasks as {@link TaskList#findToDisplayString(String)} does, by scanning.
+         *
+         * @param keyword Keyword to search for.
+         * @return Formatted string containing matching tasks.
+         */
+        public String findToDisplayString(String keyword) {
+            return TaskList.findToDisplayString(view, keyword);
+        }
+
+        private int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+
+        // Index of the chunk holding the given 0-based position; the last chunk for the end
+        private int chunkOf(int pos) {
+            int lo = 0;
+            int hi = chunks.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ends[mid] > pos) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        private int chunkStart(int c) {
+            return c == 0 ? 0 : ends[c - 1];
+        }
+
+        private Task get(int pos) {
+            int c = chunkOf(pos);
+            return chunks[c][pos - chunkStart(c)];
+        }
+
+        private Snapshot inserted(long newVersion, int pos, Task t) {
+            if (chunks.length == 0) {
+                return new Snapshot(newVersion, new Task[][] {{t}});
+            }
+            int c = chunkOf(pos);
+            Task[] old = chunks[c];
+            int at = pos - chunkStart(c);
+            Task[] chunk = new Task[old.length + 1];
+            System.arraycopy(old, 0, chunk, 0, at);
+            chunk[at] = t;
+            System.arraycopy(old, at, chunk, at + 1, old.length - at);
+            if (chunk.length <= 2 * CHUNK_SIZE) {
+                return withChunk(newVersion, c, chunk);
+            }
+            // Split the full chunk in two halves
+            Task[][] next = new Task[chunks.length + 1][];
+            System.arraycopy(chunks, 0, next, 0, c);
+            next[c] = Arrays.copyOfRange(chunk, 0, chunk.length / 2);
+            next[c + 1] = Arrays.copyOfRange(chunk, chunk.length / 2, chunk.length);
+            System.arraycopy(chunks, c + 1, next, c + 2, chunks.length - c - 1);
+            return new Snapshot(newVersion, next);
+        }
+
+        private Snapshot removed(long newVersion, int pos) {
+            int c = chunkOf(pos);
+            Task[] old = chunks[c];
+            int at = pos - chunkStart(c);
+            if (old.length == 1) {
+                Task[][] next = new Task[chunks.length - 1][];
+                System.arraycopy(chunks, 0, next, 0, c);
+                System.arraycopy(chunks, c + 1, next, c, chunks.length - c - 1);
+                return new Snapshot(newVersion, next);
+            }
+            Task[] chunk = new Task[old.length - 1];
+            System.arraycopy(old, 0, chunk, 0, at);
+            System.arraycopy(old, at + 1, chunk, at, old.length - at - 1);
+            return withChunk(newVersion, c, chunk);
+        }
+
+        private Snapshot replaced(long newVersion, int pos, Task t) {
+            int c = chunkOf(pos);
+            Task[] chunk = chunks[c].clone();
+            chunk[pos - chunkStart(c)] = t;
+            return withChunk(newVersion, c, chunk);
+        }
+
+        // Drops the tasks at the given sorted 1-based positions, copying only the chunks they are in
+        private Snapshot removedAll(long newVersion, int[] idx1Based) {
+            List<Task[]> next = new ArrayList<>(chunks.length);
+            int k = 0;
+            for (int c = 0; c < chunks.length; c++) {
+                int start = chunkStart(c);
+                if (k == idx1Based.length || idx1Based[k] > ends[c]) {
+                    next.add(chunks[c]);
+                    continue;
+                }
+                Task[] kept = new Task[chunks[c].length];
+                int write = 0;
+                for (int i = 0; i < chunks[c].length; i++) {
+                    if (k < idx1Based.length && idx1Based[k] == start + i + 1) {
+                        k++;
+                    } else {
+                        kept[write++] = chunks[c][i];
+                    }
+                }
+                if (write > 0) {
+                    next.add(Arrays.copyOf(kept, write));
+                }
+            }
+            return new Snapshot(newVersion, next.toArray(new Task[0][]));
+        }
+
+        // Puts fresh copies of the tasks at the given sorted 1-based positions whose status
+        // changed, copying each chunk touched once
+        private Snapshot replacedAll(long newVersion, int[] idx1Based, IntFunction<Task> live) {
+            Task[][] next = chunks.clone();
+            int c = -1;
+            for (int idx : idx1Based) {
+                Task t = live.apply(idx);
+                int chunk = chunkOf(idx - 1);
+                int at = idx - 1 - chunkStart(chunk);
+                if (chunks[chunk][at].isDone() == t.isDone()) {
+                    continue;
+                }
+                if (chunk != c) {
+                    c = chunk;
+                    next[c] = chunks[c].clone();
+                }
+                next[c][at] = t.copy();
+            }
+            return new Snapshot(newVersion, next);
+        }
+
+        private Snapshot withChunk(long newVersion, int c, Task[] chunk) {
+            Task[][] next = chunks.clone();
+            next[c] = chunk;
+            return new Snapshot(newVersion, next);
+        }
+
+        /**
+         * Read-only list over the chunks.
+         */
+        private final class ChunkedView extends AbstractList<Task> {
+            @Override
+            public Task get(int index) {
+                Objects.checkIndex(index, size());
+                return Snapshot.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return Snapshot.this.size();
+            }
+
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<>() {
+                    private int c = 0;
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return c < chunks.length;
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Task t = chunks[c][i++];
+                        if (i == chunks[c].length) {
+                            c++;
+                            i = 0;
+                        }
+                        return t;
+                    }
+                };
+            }
+        }
+    }
+
+    // Target number of tasks per snapshot chunk; a chunk is split once it holds twice as many
+    private static final int CHUNK_SIZE = 256;
+
+    private final Object writeLock = new Object();
+    private volatile Snapshot current;
+
+    /**
+     * Creates an empty concurrent task list with the given backing.
+     *
+     * @param backing How the tasks are held in memory.
+     */
+    public ConcurrentTaskList(Backing backing) {
+        this(new ArrayList<>(), backing);
+    }
+
+    /**
+     * Creates a concurrent task list with the given backing, initialized with tasks loaded
+     * from storage.
+     *
+     * @param loaded Tasks loaded from storage.
+     * @param backing How the tasks are held in memory.
+     */
+    public ConcurrentTaskList(List<Task> loaded, Backing backing) {
+        this(loaded, backing, 0);
+    }
+
+    /**
+     * Creates a concurrent task list with the given backing, initialized with tasks loaded
+     * from storage, handing out new IDs above the given high-water mark.
+     *
+     * @param loaded Tasks loaded from storage.
+     * @param backing How the tasks are held in memory.
+     * @param idHighWater Highest ID the storage has ever held (see {@link Storage#getIdHighWater()}).
+     */
+    public ConcurrentTaskList(List<Task> loaded, Backing backing, int idHighWater) {
+        super(loaded, backing, idHighWater);
+        Task[][] chunks = new Task[(loaded.size() + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int c = 0; c < chunks.length; c++) {
+            int start = c * CHUNK_SIZE;
+            chunks[c] = new Task[Math.min(CHUNK_SIZE, loaded.size() - start)];
+            for (int i = 0; i < chunks[c].length; i++) {
+                chunks[c][i] = loaded.get(start + i).copy();
+            }
+        }
+        current = new Snapshot(0, chunks);
+    }
+
+    /**
+     * Returns the latest snapshot, without locking.
+     *
+     * @return The tasks as of the last completed change.
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public long getVersion() {
+        return current.version;
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current.size() == 0;
+    }
+
+    /**
+     * Returns the tasks of the latest snapshot, which later changes leave untouched.
+     *
+     * @return Read-only list of the tasks.
+     */
+    @Override
+    public List<Task> getTasks() {
+        return current.getTasks();
+    }
+
+    /**
+     * Returns the task at the given 1-based index, as of the latest snapshot.
+     * The task must not be modified.
+     *
+     * @param idx1Based 1-based index.
+     * @return Task at the given index.
+     */
+    @Override
+    public Task get(int idx1Based) {
+        return current.getTasks().get(idx1Based - 1);
+    }
+
+    @Override
+    public String toDisplayString() {
+        return current.toDisplayString();
+    }
+
+    @Override
+    public void writeDisplayTo(Appendable out) throws IOException {
+        current.writeDisplayTo(out);
+    }
+
+    @Override
+    public String pageToDisplayString(int offset, int limit) {
+        return current.pageToDisplayString(offset, limit);
+    }
+
+    @Override
+    public String findToDisplayString(String keyword) {
+        return current.findToDisplayString(keyword);
+    }
+
+    @Override
+    public void add(Task t) {
+        synchronized (writeLock) {
+            super.add(t);
+            current = current.inserted(super.getVersion(), current.size(), t.copy());
+        }
+    }
+
+    @Override
+    public Task addTodo(String desc) {
+        synchronized (writeLock) {
+            Task t = super.addTodo(desc);
+            current = current.inserted(super.getVersion(), current.size(), t.copy());
+            return t;
+        }
+    }
+
+    @Override
+    public void addAt(int idx1Based, Task task) {
+        synchronized (writeLock) {
+            super.addAt(idx1Based, task);
+            current = current.inserted(super.getVersion(), idx1Based - 1, task.copy());
+        }
+    }
+
+    @Override
+    public Task delete(int idx1Based) {
+        synchronized (writeLock) {
+            Task removed = super.delete(idx1Based);
+            current = current.removed(super.getVersion(), idx1Based - 1);
+            return removed;
+        }
+    }
+
+    @Override
+    public Task mark(int idx1Based) {
+        synchronized (writeLock) {
+            Task t = super.mark(idx1Based);
+            if (super.getVersion() != current.version) {
+                current = current.replaced(super.getVersion(), idx1Based - 1, t.copy());
+            }
+            return t;
+        }
+    }
+
+    @Override
+    public Task unmark(int idx1Based) {
+        synchronized (writeLock) {
+            Task t = super.unmark(idx1Based);
+            if (super.getVersion() != current.version) {
+                current = current.replaced(super.getVersion(), idx1Based - 1, t.copy());
+            }
+            return t;
+        }
+    }
+
+    @Override
+    public List<Task> deleteAll(int[] idx1Based) {
+        synchronized (writeLock) {
+            List<Task> removed = super.deleteAll(idx1Based);
+            current = current.removedAll(super.getVersion(), idx1Based);
+            return removed;
+        }
+    }
+
+    @Override
+    public List<Task> setDone(int[] idx1Based, boolean isDone) {
+        synchronized (writeLock) {
+            List<Task> changed = super.setDone(idx1Based, isDone);
+            if (!changed.isEmpty()) {
+                current = current.replacedAll(super.getVersion(), idx1Based, this::liveTask);
+            }
+            return changed;
+        }
+    }
+
+    @Override
+    public int[] positionsWithStatus(Boolean isDone) {
+        synchronized (writeLock) {
+            return super.positionsWithStatus(isDone);
+        }
+    }
+
+    @Override
+    public int countDone() {
+        synchronized (writeLock) {
+            return super.countDone();
+        }
+    }
+
+    @Override
+    public String toCountString() {
+        synchronized (writeLock) {
+            return super.toCountString();
+        }
+    }
+
+    @Override
+    public String statusToDisplayString(boolean isDone) {
+        synchronized (writeLock) {
+            return super.statusToDisplayString(isDone);
+        }
+    }
+
+    @Override
+    public String findWordsToDisplayString(String words) {
+        synchronized (writeLock) {
+            return super.findWordsToDisplayString(words);
+        }
+    }
+
+    @Override
+    public String overlapsToDisplayString(LocalDateTime from, LocalDateTime to) {
+        synchronized (writeLock) {
+            return super.overlapsToDisplayString(from, to);
+        }
+    }
+
+    @Override
+    public String onToDisplayString(LocalDate date) {
+        synchronized (writeLock) {
+            return super.onToDisplayString(date);
+        }
+    }
+
+    @Override
+    public String freeToDisplayString(LocalDate date) {
+        synchronized (writeLock) {
+            return super.freeToDisplayString(date);
+        }
+    }
+
+    @Override
+    public String dueToDisplayString(LocalDate date, Boolean isDone) {
+        synchronized (writeLock) {
+            return super.dueToDisplayString(date, isDone);
+        }
+    }
+
+    @Override
+    public String upcomingToDisplayString(LocalDateTime now, int count, Boolean isDone) {
+        synchronized (writeLock) {
+            return super.upcomingToDisplayString(now, count, isDone);
+        }
+    }
+
+    @Override
+    public String overdueToDisplayString(LocalDateTime now, Boolean isDone) {
+        synchronized (writeLock) {
+            return super.overdueToDisplayString(now, isDone);
+        }
+    }
+
+    @Override
+    public void setWordIndexEnabled(boolean isEnabled) {
+        synchronized (writeLock) {
+            super.setWordIndexEnabled(isEnabled);
+        }
+    }
+
+    @Override
+    public void setSubstringIndexEnabled(boolean isEnabled) {
+        synchronized (writeLock) {
+            super.setSubstringIndexEnabled(isEnabled);
+        }
+    }
+
+    @Override
+    public Task getById(int id) {
+        synchronized (writeLock) {
+            return super.getById(id);
+        }
+    }
+
+    @Override
+    public int indexOfId(int id) {
+        synchronized (writeLock) {
+            return super.indexOfId(id);
+        }
+    }
+
+    /**
+     * Returns whether the given list is the task list of a {@link Snapshot}, which never changes.
+     */
+    static boolean isSnapshot(List<Task> tasks) {
+        return tasks instanceof Snapshot.ChunkedView;
+    }
+
+    private Task liveTask(int idx1Based) {
+        return super.get(idx1Based);
+    }
+}
@@ -37,12 +37,17 @@ public class Deadline extends Task {
 
 
     /**
-     * Returns a user-friendly string representation of this deadline task.
+     * Formats this deadline task for display.
      *
      * @return Formatted task string.
      */
     @Override
-    public String toString() {
-        return "[D]" + super.toString() + " (by: " + by.format(OUT_FMT) + ")";
+    protected String render() {
+        return "[D]" + super.render() + " (by: " + by.format(OUT_FMT) + ")";
+    }
+
+    @Override
+    Deadline copy() {
+        return (Deadline) copyStateTo(new Deadline(getDescription(), by));
     }
 }
@@ -0,0 +1,100 @@
+package walle;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Keeps deadlines sorted by due time, then by task ID, with pending and done deadlines in
+ * separate trees. Finding the first k deadlines of a range therefore takes O(log n + k),
+ * whether or not the query is limited to one status.
+ */
+final class DeadlineIndex {
+
+    private static final Comparator<Deadline> BY_DUE =
+            Comparator.comparing(Deadline::getBy).thenComparingInt(Task::getId);
+
+    private final TreeSet<Deadline> pending = new TreeSet<>(BY_DUE);
+    private final TreeSet<Deadline> done = new TreeSet<>(BY_DUE);
+
+    void add(Deadline d) {
+        treeFor(d.isDone()).add(d);
+    }
+
+    void remove(Deadline d) {
+        boolean isRemoved = treeFor(d.isDone()).remove(d);
+        assert isRemoved : "deadline was not in the index";
+    }
+
+    /**
+     * Moves a deadline that was just marked or unmarked to its new status tree.
+     */
+    void statusChanged(Deadline d) {
+        treeFor(!d.isDone()).remove(d);
+        treeFor(d.isDone()).add(d);
+    }
+
+    void clear() {
+        pending.clear();
+        done.clear();
+    }
+
+    /**
+     * Returns the deadlines due before the given time, earliest first.
+     *
+     * @param time Exclusive upper bound on the due time.
+     * @param isDone Status to keep, or null for both.
+     * @return Matching deadlines.
+     */
+    List<Deadline> dueBefore(LocalDateTime time, Boolean isDone) {
+        Deadline bound = probe(time);
+        return take(isDone, Integer.MAX_VALUE, pending.headSet(bound, false), done.headSet(bound, false));
+    }
+
+    /**
+     * Returns the first deadlines due at or after the given time, earliest first.
+     *
+     * @param time Inclusive lower bound on the due time.
+     * @param isDone Status to keep, or null for both.
+     * @param limit Maximum number of deadlines returned.
+     * @return Matching deadlines.
+     */
+    List<Deadline> dueFrom(LocalDateTime time, Boolean isDone, int limit) {
+        Deadline bound = probe(time);
+        return take(isDone, limit, pending.tailSet(bound, true), done.tailSet(bound, true));
+    }
+
+    // Merges the two sorted status views, or reads just one when a status is given.
+    private static List<Deadline> take(Boolean isDone, int limit,
+            NavigableSet<Deadline> pendingView, NavigableSet<Deadline> doneView) {
+        Iterator<Deadline> a = Boolean.TRUE.equals(isDone) ? Collections.emptyIterator() : pendingView.iterator();
+        Iterator<Deadline> b = Boolean.FALSE.equals(isDone) ? Collections.emptyIterator() : doneView.iterator();
+        List<Deadline> result = new ArrayList<>();
+        Deadline nextA = a.hasNext() ? a.next() : null;
+        Deadline nextB = b.hasNext() ? b.next() : null;
+        while (result.size() < limit && (nextA != null || nextB != null)) {
+            if (nextB == null || nextA != null && BY_DUE.compare(nextA, nextB) < 0) {
+                result.add(nextA);
+                nextA = a.hasNext() ? a.next() : null;
+            } else {
+                result.add(nextB);
+                nextB = b.hasNext() ? b.next() : null;
+            }
+        }
+        return result;
+    }
+
+    // A stand-in ordered before every real deadline due at the same time, as real IDs are >= 1.
+    private static Deadline probe(LocalDateTime time) {
+        return new Deadline("probe", time);
+    }
+
+    private TreeSet<Deadline> treeFor(boolean isDone) {
+        return isDone ? done : pending;
+    }
+}
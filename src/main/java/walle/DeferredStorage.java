@@ -0,0 +1,156 @@
+package walle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps another backend and holds back writes: once a list is attached, single mutations are
+ * recorded and only reach the backend at {@link #flush()}, which replays them as one batch.
+ * A journaling backend therefore gets the usual records, written at once, and keeps its
+ * snapshot. A full save of the attached list supersedes the recorded mutations and is made
+ * with one {@link Storage#save(List)} at the next flush instead.
+ * Changes since the last flush are lost if the process dies.
+ */
+public class DeferredStorage implements Storage {
+
+    private final Storage backend;
+    private TaskList tasks;
+    private final List<PendingWrite> pendingWrites = new ArrayList<>();
+    private boolean isFullSaveDue;
+    private long pendingChanges;
+
+    // One held-back write, replayed on the backend at flush
+    private interface PendingWrite {
+        void replay(Storage backend) throws WalleException;
+    }
+
+    /**
+     * Creates a deferring wrapper around the given backend.
+     *
+     * @param backend Backend the tasks are loaded from and eventually saved to.
+     */
+    public DeferredStorage(Storage backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Returns the number of mutations recorded since the last flush.
+     *
+     * @return Number of pending mutations.
+     */
+    public long getPendingChanges() {
+        return pendingChanges;
+    }
+
+    @Override
+    public void attach(TaskList tasks) {
+        this.tasks = tasks;
+    }
+
+    @Override
+    public ArrayList<Task> load() throws WalleException {
+        return backend.load();
+    }
+
+    @Override
+    public int getIdHighWater() {
+        return backend.getIdHighWater();
+    }
+
+    /**
+     * Saves the given tasks on the backend right away if no list is attached yet; otherwise
+     * leaves them to the next flush, as they are the attached list, and drops the mutations
+     * recorded so far, as the save covers them.
+     */
+    @Override
+    public void save(List<Task> tasks) throws WalleException {
+        if (this.tasks != null) {
+            pendingChanges++;
+            pendingWrites.clear();
+            isFullSaveDue = true;
+            return;
+        }
+        backend.save(tasks);
+        pendingChanges = 0;
+    }
+
+    @Override
+    public void appendAdd(Task t) {
+        // A copy, since the task may change again before the record is replayed
+        Task added = t.copy();
+        record(backend -> backend.appendAdd(added));
+    }
+
+    @Override
+    public void appendInsert(int idx1Based, Task t) {
+        Task inserted = t.copy();
+        record(backend -> backend.appendInsert(idx1Based, inserted));
+    }
+
+    @Override
+    public void appendDelete(int idx1Based) {
+        record(backend -> backend.appendDelete(idx1Based));
+    }
+
+    @Override
+    public void appendMark(int idx1Based) {
+        record(backend -> backend.appendMark(idx1Based));
+    }
+
+    @Override
+    public void appendUnmark(int idx1Based) {
+        record(backend -> backend.appendUnmark(idx1Based));
+    }
+
+    private void record(PendingWrite write) {
+        pendingChanges++;
+        if (!isFullSaveDue) {
+            pendingWrites.add(write);
+        }
+    }
+
+    /**
+     * Replays the recorded mutations on the backend as one batch, or saves the attached list if
+     * a full save is due, then flushes the backend. The mutations are dropped only once they are
+     * written. If replaying fails, the backend may have taken some of them, so the next flush
+     * saves the whole list instead of replaying them again.
+     *
+     * @throws WalleException If the tasks cannot be written.
+     */
+    @Override
+    public void flush() throws WalleException {
+        if (isFullSaveDue) {
+            assert tasks != null : "a save was deferred before a task list was attached";
+            backend.save(tasks.getTasks());
+            isFullSaveDue = false;
+        } else if (!pendingWrites.isEmpty()) {
+            assert tasks != null : "mutations were recorded before a task list was attached";
+            replayPendingWrites();
+        }
+        pendingWrites.clear();
+        pendingChanges = 0;
+        backend.flush();
+    }
+
+    private void replayPendingWrites() throws WalleException {
+        try {
+            backend.beginBatch();
+            try {
+                for (PendingWrite write : pendingWrites) {
+                    write.replay(backend);
+                }
+            } finally {
+                backend.endBatch();
+            }
+        } catch (WalleException | RuntimeException e) {
+            isFullSaveDue = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws WalleException {
+        flush();
+        backend.close();
+    }
+}
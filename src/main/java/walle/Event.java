@@ -36,14 +36,19 @@ public class Event extends Task {
     }
 
     /**
-     * Returns a user-friendly string representation of this event task.
+     * Formats this event task for display.
      *
      * @return Formatted task string.
      */
     @Override
-    public String toString() {
-        return "[E]" + super.toString()
+    protected String render() {
+        return "[E]" + super.render()
                 + " (from: " + from.format(OUT_FMT)
                 + " to: " + to.format(OUT_FMT) + ")";
     }
+
+    @Override
+    Event copy() {
+        return (Event) copyStateTo(new Event(getDescription(), from, to));
+    }
 }
@@ -0,0 +1,182 @@
+package walle;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Indexes events by their time ranges in a treap ordered by start time, where each node
+ * also holds the latest end time in its subtree. A query skips every subtree that ends
+ * before the queried range, so finding the k events overlapping a range takes
+ * O(log n + k) expected time.
+ */
+final class EventIntervalTree {
+
+    private static final class Node {
+        private final Event event;
+        private final long start;
+        private final long end;
+        private final int priority;
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        private Node(Event event, int priority) {
+            this.event = event;
+            this.start = seconds(event.getFrom());
+            this.end = seconds(event.getTo());
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(Event e) {
+        root = insert(root, new Node(e, random.nextInt()));
+        size++;
+    }
+
+    void remove(Event e) {
+        int before = size;
+        root = remove(root, seconds(e.getFrom()), e);
+        assert size == before - 1 : "event was not in the index";
+    }
+
+    void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Returns the events overlapping the range from {@code from} (inclusive) to {@code to}
+     * (exclusive), ordered by start time. Events that merely touch the range, e.g. one
+     * ending exactly when it starts, do not overlap it; an event of zero length counts
+     * if it lies inside the range. A range of zero length is a point in time: it matches
+     * the events under way at that instant, including those starting right then.
+     *
+     * @param from Start of the range.
+     * @param to End of the range.
+     * @return Overlapping events, earliest start first.
+     */
+    List<Event> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<Event> result = new ArrayList<>();
+        collect(root, seconds(from), seconds(to), result);
+        return result;
+    }
+
+    private static void collect(Node n, long from, long to, List<Event> result) {
+        if (n == null || n.maxEnd < from) {
+            return;
+        }
+        collect(n.left, from, to, result);
+        if (from == to ? n.start > to : n.start >= to) {
+            return; // n and everything to its right start too late
+        }
+        if (n.end > from || n.start >= from) {
+            result.add(n.event);
+        }
+        collect(n.right, from, to, result);
+    }
+
+    private static Node insert(Node n, Node added) {
+        if (n == null) {
+            return added;
+        }
+        if (added.priority > n.priority) {
+            Node[] halves = split(n, added);
+            added.left = halves[0];
+            added.right = halves[1];
+            update(added);
+            return added;
+        }
+        if (compare(added.start, added.event, n) < 0) {
+            n.left = insert(n.left, added);
+        } else {
+            n.right = insert(n.right, added);
+        }
+        update(n);
+        return n;
+    }
+
+    private Node remove(Node n, long start, Event e) {
+        if (n == null) {
+            return null;
+        }
+        if (n.event == e) {
+            size--;
+            return merge(n.left, n.right);
+        }
+        if (compare(start, e, n) < 0) {
+            n.left = remove(n.left, start, e);
+        } else {
+            n.right = remove(n.right, start, e);
+        }
+        update(n);
+        return n;
+    }
+
+    // Splits n into the nodes ordered before the key node and the rest.
+    private static Node[] split(Node n, Node key) {
+        if (n == null) {
+            return new Node[2];
+        }
+        if (compare(n.start, n.event, key) < 0) {
+            Node[] halves = split(n.right, key);
+            n.right = halves[0];
+            update(n);
+            halves[0] = n;
+            return halves;
+        }
+        Node[] halves = split(n.left, key);
+        n.left = halves[1];
+        update(n);
+        halves[1] = n;
+        return halves;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    // Orders by start time, then by task ID so that simultaneous events stay distinct.
+    private static int compare(long start, Event e, Node n) {
+        int byStart = Long.compare(start, n.start);
+        return byStart != 0 ? byStart : Integer.compare(e.getId(), n.event.getId());
+    }
+
+    private static void update(Node n) {
+        n.maxEnd = n.end;
+        if (n.left != null) {
+            n.maxEnd = Math.max(n.maxEnd, n.left.maxEnd);
+        }
+        if (n.right != null) {
+            n.maxEnd = Math.max(n.maxEnd, n.right.maxEnd);
+        }
+    }
+
+    private static long seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,1010 @@
+package walle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * Handles loading tasks from a save file on disk and saving tasks to it.
+ * This is the default {@link Storage} backend.
+ *
+ * Besides full rewrites through {@link #save(List)}, single mutations can be
+ * appended to a journal file next to the save file (e.g. {@code walle.txt.journal}).
+ * Each journal record costs O(1) disk work, and {@link #load()} replays the journal
+ * on top of the save file.
+ *
+ * Once the journal grows past {@link #COMPACTION_THRESHOLD} records, {@link #compactAsync(List)}
+ * folds it into a fresh snapshot of the save file on a background thread. The protocol is:
+ * <ol>
+ *   <li>rename the journal to {@code walle.txt.journal.old} (new records go to a fresh journal),
+ *       or create an empty {@code walle.txt.journal.old} if there is no journal,</li>
+ *   <li>write and fsync the snapshot to {@code walle.txt.tmp},</li>
+ *   <li>delete the old journal,</li>
+ *   <li>rename the snapshot over the save file.</li>
+ * </ol>
+ * A crash at any step is recovered by {@link #load()}: a temporary snapshot is only trusted
+ * once the old journal it replaces is gone. Since the old journal exists before the first
+ * byte of a snapshot is written, its absence is a positive sign that the snapshot is complete.
+ *
+ * Snapshots are written in the configured {@link SaveFormat}. The format of an existing save
+ * file is detected on load, and a file in the other format is converted by the next snapshot.
+ */
+public class FileStorage implements Storage {
+
+    /** Number of journal records after which a snapshot is worth taking. */
+    public static final int COMPACTION_THRESHOLD = 500;
+
+    /** Save file name ending for which {@link Storage#open(String)} picks the binary format. */
+    public static final String BINARY_SUFFIX = ".bin";
+
+    /** Write-behind window used by {@link Storage#open(String)}; bursts within it share one write. */
+    static final long DEFAULT_WRITE_BEHIND_DELAY_MILLIS = 200;
+
+    private static final DateTimeFormatter SAVE_DATE_TIME_FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String OLD_JOURNAL_SUFFIX = ".journal.old";
+    private static final String SNAPSHOT_SUFFIX = ".tmp";
+    // First line of every journal file, followed by a token unique to that file
+    private static final String JOURNAL_HEADER = "#journal ";
+    // First line of a text save file, followed by the highest task ID ever stored, in hex
+    private static final String ID_HIGH_WATER_HEADER = "#max-id ";
+    private static final int PARALLEL_LOAD_MIN_BYTES = 1 << 20;
+    private static final int PARALLEL_LOAD_MIN_CHUNK_BYTES = 1 << 18;
+    // Bytes of a text save file read and decoded at a time
+    private static final int TEXT_BLOCK_BYTES = 1 << 22;
+    private final Path savePath;
+    private final Path journalPath;
+    private final Path oldJournalPath;
+    private final Path snapshotPath;
+    private final SaveFormat format;
+
+    private boolean isParallelLoad = false;
+    // Appended from the caller's thread, reset by rotations that may race with it
+    private final AtomicInteger journalRecords = new AtomicInteger();
+
+    private final Object journalLock = new Object();
+    private final StringBuilder pendingRecords = new StringBuilder();
+    private long writeBehindDelayMillis = 0;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.NEVER;
+    private ScheduledExecutorService flusher;
+    private Thread shutdownFlush;
+    private boolean isFlushScheduled = false;
+    // Depth of nested beginBatch() calls; records queue up until the outermost batch ends
+    private int batchDepth = 0;
+    private IOException flushError;
+    private boolean isFormatConversionDue = false;
+    // Highest task ID seen in the save file, the journal or a recorded change
+    private int idHighWater = 0;
+    private ExecutorService compactor;
+    private Future<?> pendingCompaction;
+
+
+    /**
+     * Creates a storage handler that reads from and writes to the specified file path
+     * using the text format.
+     * @param filePath Path to the save file.
+     */
+    public FileStorage(String filePath) {
+        this(filePath, SaveFormat.TEXT);
+    }
+
+    /**
+     * Creates a storage handler that reads from and writes to the specified file path.
+     * @param filePath Path to the save file.
+     * @param format Format used when writing the save file.
+     */
+    public FileStorage(String filePath, SaveFormat format) {
+        this.format = format;
+        this.savePath = Paths.get(filePath);
+        this.journalPath = Paths.get(filePath + JOURNAL_SUFFIX);
+        this.oldJournalPath = Paths.get(filePath + OLD_JOURNAL_SUFFIX);
+        this.snapshotPath = Paths.get(filePath + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Sets whether large text save files are parsed on several threads.
+     * Files under 1 MB are always parsed on the calling thread.
+     *
+     * @param isParallelLoad True to parse large files in parallel chunks.
+     */
+    public void setParallelLoad(boolean isParallelLoad) {
+        this.isParallelLoad = isParallelLoad;
+    }
+
+    /**
+     * Turns on write-behind journaling. Records are queued in memory and a background thread
+     * writes each burst in a single append once the oldest queued record is
+     * {@code maxDelayMillis} old. Pending records are also written by {@link #flush()},
+     * {@link #close()} and when the JVM shuts down.
+     *
+     * @param maxDelayMillis Longest time a record may wait before being written; 0 writes through.
+     * @param fsyncPolicy Whether each write is forced to disk.
+     */
+    public void setWriteBehind(long maxDelayMillis, FsyncPolicy fsyncPolicy) {
+        assert maxDelayMillis >= 0 : "write-behind delay should not be negative";
+        this.fsyncPolicy = fsyncPolicy;
+        synchronized (pendingRecords) {
+            this.writeBehindDelayMillis = maxDelayMillis;
+            if (maxDelayMillis > 0 && flusher == null) {
+                flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "walle-journal-flusher");
+                    t.setDaemon(true);
+                    return t;
+                });
+                shutdownFlush = new Thread(this::flushInBackground);
+                Runtime.getRuntime().addShutdownHook(shutdownFlush);
+            }
+        }
+    }
+
+    /**
+     * Loads tasks from the save file, then replays any journal written since the last snapshot.
+     *
+     * @return A task list containing tasks read from storage.
+     * @throws WalleException If the file cannot be read or data format is invalid.
+     */
+    @Override
+    public ArrayList<Task> load() throws WalleException {
+        ArrayList<Task> tasks = new ArrayList<>();
+        idHighWater = 0;
+
+        try {
+            recoverInterruptedSnapshot();
+            if (Files.exists(savePath)) {
+                tasks = readSaveFile();
+                noteIds(tasks);
+            }
+            int replayed = 0;
+            String liveHeader = Files.exists(journalPath) ? readHeader(journalPath) : null;
+            if (Files.exists(oldJournalPath)) {
+                replayed += replayJournal(oldJournalPath, tasks, liveHeader);
+            }
+            if (Files.exists(journalPath)) {
+                replayed += replayJournal(journalPath, tasks, null);
+            }
+            journalRecords.set(replayed);
+            return tasks;
+
+        } catch (IOException e) {
+            throw new WalleException("Warning: save file is unreadable. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the highest task ID seen in the save file, the journal or a change recorded since.
+     * Snapshots store it, so IDs of tasks deleted before a snapshot are remembered.
+     *
+     * @return Highest task ID stored so far, or 0 if none.
+     */
+    @Override
+    public int getIdHighWater() {
+        return idHighWater;
+    }
+
+    /**
+     * Saves tasks to the save file, overwriting existing content and clearing the journal.
+     *
+     * @param tasks The tasks to be saved.
+     * @throws WalleException If the file cannot be written.
+     */
+    @Override
+    public void save(List<Task> tasks) throws WalleException {
+        awaitCompaction();
+        noteIds(tasks);
+        try {
+            rotateJournal();
+            writeSnapshot(tasks, idHighWater);
+
+        } catch (IOException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns whether enough journal records have piled up to make a snapshot worthwhile.
+     *
+     * @return True if a compaction should be started; false otherwise.
+     */
+    @Override
+    public boolean needsCompaction() {
+        return journalRecords.get() >= COMPACTION_THRESHOLD || isFormatConversionDue;
+    }
+
+    /**
+     * Starts writing a snapshot of the given tasks on a background thread and truncates the
+     * journal once the snapshot is durable. Does nothing if a compaction is already running.
+     * The caller may keep mutating its list and journaling afterwards; those records go to a
+     * fresh journal that is replayed on top of the snapshot.
+     *
+     * @param tasks Current tasks; only the list structure is copied, on the calling thread,
+     *     unless they are a {@link ConcurrentTaskList} snapshot, which is written as it is.
+     * @return True if a compaction was started; false if one is still in progress.
+     * @throws WalleException If the journal cannot be rotated.
+     */
+    @Override
+    public boolean compactAsync(List<Task> tasks) throws WalleException {
+        if (pendingCompaction != null && !pendingCompaction.isDone()) {
+            return false;
+        }
+
+        try {
+            rotateJournal();
+        } catch (IOException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+
+        // Later status changes are journaled, so a shallow copy is enough for a consistent replay.
+        // A snapshot of a concurrent task list never changes, so it needs no copy at all.
+        List<Task> snapshot = ConcurrentTaskList.isSnapshot(tasks) ? tasks : new ArrayList<>(tasks);
+        noteIds(snapshot);
+        int snapshotHighWater = idHighWater;
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "walle-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        pendingCompaction = compactor.submit(() -> {
+            writeSnapshot(snapshot, snapshotHighWater);
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * Flushes pending journal records, waits for a running compaction, if any, to finish
+     * and stops the background threads.
+     *
+     * @throws WalleException If pending records cannot be written or the last compaction failed.
+     */
+    @Override
+    public void close() throws WalleException {
+        flush();
+        awaitCompaction();
+        if (compactor != null) {
+            compactor.shutdown();
+            compactor = null;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+            writeBehindDelayMillis = 0;
+        }
+        if (shutdownFlush != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownFlush);
+            } catch (IllegalStateException e) {
+                // The JVM is already shutting down and the hook flushes nothing new.
+            }
+            shutdownFlush = null;
+        }
+    }
+
+    private void awaitCompaction() throws WalleException {
+        if (pendingCompaction == null) {
+            return;
+        }
+        try {
+            pendingCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The old journal is kept, so nothing is lost; the next snapshot retries.
+            throw new WalleException("Oops — couldn't save tasks: " + e.getCause().getMessage());
+        } finally {
+            pendingCompaction = null;
+        }
+    }
+
+    /**
+     * Moves the live journal aside so that it can be folded into a snapshot while new records
+     * keep going to a fresh journal. If an older journal is still waiting to be folded in, the
+     * live journal is appended to it instead; the copy starts with the live journal's header,
+     * so if a crash keeps the live journal too, {@link #load()} replays its records only once.
+     * With no live journal, an empty old journal is
+     * created, as {@link #recoverInterruptedSnapshot()} relies on it while a snapshot is written.
+     */
+    private void rotateJournal() throws IOException {
+        synchronized (journalLock) {
+            flushJournal();
+            journalRecords.set(0);
+            isFormatConversionDue = false;
+            if (!Files.exists(journalPath)) {
+                if (!Files.exists(oldJournalPath)) {
+                    if (oldJournalPath.getParent() != null) {
+                        Files.createDirectories(oldJournalPath.getParent());
+                    }
+                    Files.createFile(oldJournalPath);
+                }
+                return;
+            }
+            if (Files.exists(oldJournalPath)) {
+                Files.write(oldJournalPath, Files.readAllBytes(journalPath), StandardOpenOption.APPEND);
+                Files.delete(journalPath);
+            } else {
+                Files.move(journalPath, oldJournalPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    /**
+     * Writes the tasks to a temporary snapshot, forces it to disk, drops the journal it
+     * replaces and finally renames it over the save file. The ID high-water mark goes into
+     * the snapshot's header; text files without task IDs get no header.
+     */
+    private void writeSnapshot(List<Task> tasks, int highWater) throws IOException {
+        if (savePath.getParent() != null) {
+            Files.createDirectories(savePath.getParent());
+        }
+
+        if (format == SaveFormat.BINARY) {
+            try (OutputStream out = Files.newOutputStream(snapshotPath)) {
+                BinaryTaskCodec.write(tasks, highWater, out);
+            }
+        } else {
+            ArrayList<String> lines = new ArrayList<>(tasks.size() + 1);
+            if (highWater > 0) {
+                lines.add(ID_HIGH_WATER_HEADER + Integer.toHexString(highWater));
+            }
+            for (Task t : tasks) {
+                lines.add(serializeTask(t));
+            }
+            Files.write(snapshotPath, lines);
+        }
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        Files.deleteIfExists(oldJournalPath);
+        Files.move(snapshotPath, savePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the save file through a file channel. Binary files are decoded record by record
+     * as they stream in. Text files are read in fixed-size blocks that are decoded straight
+     * into tasks, so no intermediate list of lines is held and memory beyond the tasks stays
+     * bounded by the block size; a line cut off at the end of a block is carried over to the
+     * next one. Nothing stays mapped, so the file can be replaced right after loading.
+     */
+    private ArrayList<Task> readSaveFile() throws IOException, WalleException {
+        try (FileChannel channel = FileChannel.open(savePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(BinaryTaskCodec.MAGIC.length);
+            readFully(channel, header);
+            SaveFormat found = BinaryTaskCodec.hasMagic(Arrays.copyOf(header.array(), header.position()))
+                    ? SaveFormat.BINARY
+                    : SaveFormat.TEXT;
+            isFormatConversionDue = found != format;
+            channel.position(0);
+            if (found == SaveFormat.BINARY) {
+                return BinaryTaskCodec.read(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16), size,
+                        this::noteId);
+            }
+            return readTextBlocks(channel, isParallelLoad && size >= PARALLEL_LOAD_MIN_BYTES);
+        }
+    }
+
+    /**
+     * Decodes a text save file one block at a time. Each block ends at its last line break;
+     * the bytes after it are moved to the front of the buffer and completed by the next read.
+     * The buffer only grows if a single line does not fit into it.
+     */
+    private ArrayList<Task> readTextBlocks(FileChannel channel, boolean isParallel)
+            throws IOException, WalleException {
+        ArrayList<Task> tasks = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(TEXT_BLOCK_BYTES);
+        int linesBefore = 0;
+        boolean isEof = false;
+        while (!isEof) {
+            isEof = readFully(channel, buf);
+            buf.flip();
+            int end = isEof ? buf.limit() : afterLastLineBreak(buf);
+            if (end == 0 && !isEof) {
+                buf = ByteBuffer.allocate(buf.capacity() * 2).put(buf);
+                continue;
+            }
+            List<TextChunk> chunks = isParallel ? parseTextInParallel(buf, end) : List.of(new TextChunk(buf, 0, end));
+            linesBefore = parseTextChunks(chunks, linesBefore, tasks);
+            for (TextChunk chunk : chunks) {
+                noteId(chunk.idHighWater);
+            }
+            buf.position(end);
+            buf.compact();
+        }
+        return tasks;
+    }
+
+    // Reads until the buffer is full or the file ends; returns true if the file ended
+    private static boolean readFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) == -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int afterLastLineBreak(ByteBuffer buf) {
+        for (int i = buf.limit(); i > 0; i--) {
+            if (buf.get(i - 1) == '\n') {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Splits the first {@code end} bytes of a block at line boundaries and parses the pieces
+     * on the common fork-join pool. The pieces are returned in file order, so task numbers
+     * are the same as with a sequential load.
+     */
+    private static List<TextChunk> parseTextInParallel(ByteBuffer buf, int end) {
+        int pieces = Math.max(1, Math.min(end / PARALLEL_LOAD_MIN_CHUNK_BYTES,
+                ForkJoinPool.getCommonPoolParallelism() * 4));
+        List<TextChunk> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        for (int i = 1; i <= pieces && chunkStart < end; i++) {
+            int chunkEnd = i == pieces ? end : Math.max(chunkStart + 1, (int) ((long) end * i / pieces));
+            while (chunkEnd < end && buf.get(chunkEnd - 1) != '\n') {
+                chunkEnd++;
+            }
+            if (chunkEnd > chunkStart) {
+                chunks.add(new TextChunk(buf, chunkStart, chunkEnd));
+            }
+            chunkStart = chunkEnd;
+        }
+
+        ForkJoinPool.commonPool().invokeAll(chunks);
+        return chunks;
+    }
+
+    /**
+     * Runs any chunk that has not run yet and appends the parsed tasks in order.
+     * Reports the first corrupted line using its line number within the whole file.
+     *
+     * @return Number of lines read so far, including the given chunks.
+     */
+    private static int parseTextChunks(List<TextChunk> chunks, int linesBefore, ArrayList<Task> tasks)
+            throws WalleException {
+        int total = tasks.size();
+        int lines = linesBefore;
+        for (TextChunk chunk : chunks) {
+            if (!chunk.isDone) {
+                chunk.call();
+            }
+            if (chunk.error != null) {
+                throw atLine(chunk.error, lines + chunk.lineCount);
+            }
+            lines += chunk.lineCount;
+            total += chunk.tasks.size();
+        }
+
+        tasks.ensureCapacity(total);
+        for (TextChunk chunk : chunks) {
+            tasks.addAll(chunk.tasks);
+        }
+        return lines;
+    }
+
+    private static WalleException atLine(WalleException e, int lineNo) {
+        return new WalleException(e.getMessage() + " (line " + lineNo + ")");
+    }
+
+    /**
+     * Decodes the text lines between two byte offsets of the save file into tasks.
+     * Each line is decoded into a reused scratch array, so only the line string itself
+     * is allocated before it is parsed. Parsing stops at the first corrupted line, whose
+     * number within the chunk is left in {@code lineCount}. Chunks are plain callables
+     * rather than fork-join tasks, as they never split further.
+     */
+    private static final class TextChunk implements Callable<Void> {
+        private final ByteBuffer buf;
+        private final int start;
+        private final int end;
+        private final ArrayList<Task> tasks = new ArrayList<>();
+        private int lineCount = 0;
+        private int idHighWater = 0;
+        private WalleException error;
+        private volatile boolean isDone = false;
+
+        TextChunk(ByteBuffer buf, int start, int end) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Void call() {
+            try {
+                parseLines();
+            } finally {
+                isDone = true;
+            }
+            return null;
+        }
+
+        private void parseLines() {
+            byte[] scratch = new byte[256];
+            int lineStart = start;
+            while (lineStart < end) {
+                int lineEnd = lineStart;
+                while (lineEnd < end && buf.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int length = lineEnd - lineStart;
+                if (length > 0 && buf.get(lineEnd - 1) == '\r') {
+                    length--;
+                }
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                buf.get(lineStart, scratch, 0, length);
+                lineCount++;
+
+                String line = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                if (!line.trim().isEmpty()) {
+                    try {
+                        if (line.startsWith(ID_HIGH_WATER_HEADER)) {
+                            idHighWater = Math.max(idHighWater, parseIdHighWater(line));
+                        } else {
+                            tasks.add(parseSavedLine(line));
+                        }
+                    } catch (WalleException e) {
+                        error = e;
+                        return;
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+    }
+
+    /**
+     * Finishes or discards a snapshot left behind by a crash. Every snapshot is started after
+     * an old journal (possibly empty) is in place, and the old journal is deleted only once the
+     * snapshot is on disk. So a temporary snapshot is complete only if the old journal is gone;
+     * otherwise it may be partial, and the save file plus the old journal are used instead.
+     */
+    private void recoverInterruptedSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        if (Files.exists(oldJournalPath)) {
+            Files.delete(snapshotPath);
+        } else {
+            Files.move(snapshotPath, savePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Appends a journal record for a task added to the end of the list.
+     *
+     * @param t The task that was added.
+     * @throws WalleException If the journal cannot be written.
+     */
+    @Override
+    public void appendAdd(Task t) throws WalleException {
+        noteId(t.getId());
+        appendRecord("add " + serializeTask(t));
+    }
+
+    /**
+     * Appends a journal record for a task inserted at the given 1-based index.
+     *
+     * @param idx1Based 1-based index at which the task was inserted.
+     * @param t The task that was inserted.
+     * @throws WalleException If the journal cannot be written.
+     */
+    @Override
+    public void appendInsert(int idx1Based, Task t) throws WalleException {
+        noteId(t.getId());
+        appendRecord("insert " + idx1Based + " " + serializeTask(t));
+    }
+
+    /**
+     * Appends a journal record for the task deleted at the given 1-based index.
+     *
+     * @param idx1Based 1-based index of the deleted task.
+     * @throws WalleException If the journal cannot be written.
+     */
+    @Override
+    public void appendDelete(int idx1Based) throws WalleException {
+        appendRecord("delete " + idx1Based);
+    }
+
+    /**
+     * Appends a journal record for the task marked as done at the given 1-based index.
+     *
+     * @param idx1Based 1-based index of the marked task.
+     * @throws WalleException If the journal cannot be written.
+     */
+    @Override
+    public void appendMark(int idx1Based) throws WalleException {
+        appendRecord("mark " + idx1Based);
+    }
+
+    /**
+     * Appends a journal record for the task marked as not done at the given 1-based index.
+     *
+     * @param idx1Based 1-based index of the unmarked task.
+     * @throws WalleException If the journal cannot be written.
+     */
+    @Override
+    public void appendUnmark(int idx1Based) throws WalleException {
+        appendRecord("unmark " + idx1Based);
+    }
+
+    private void appendRecord(String record) throws WalleException {
+        journalRecords.incrementAndGet();
+        synchronized (pendingRecords) {
+            if (flushError != null) {
+                IOException e = flushError;
+                flushError = null;
+                throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+            }
+            pendingRecords.append(record).append(System.lineSeparator());
+            if (writeBehindDelayMillis > 0) {
+                if (!isFlushScheduled) {
+                    isFlushScheduled = true;
+                    flusher.schedule(this::flushInBackground, writeBehindDelayMillis, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            if (batchDepth > 0) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Starts a batch: until it ends, records are only queued, so the whole batch is written
+     * in one append (and one fsync), as with write-behind.
+     */
+    @Override
+    public void beginBatch() {
+        synchronized (pendingRecords) {
+            batchDepth++;
+        }
+    }
+
+    /**
+     * Ends a batch, writing its records at once unless write-behind will write them shortly.
+     *
+     * @throws WalleException If the journal cannot be written.
+     */
+    @Override
+    public void endBatch() throws WalleException {
+        synchronized (pendingRecords) {
+            assert batchDepth > 0 : "endBatch without beginBatch";
+            batchDepth--;
+            if (batchDepth > 0 || writeBehindDelayMillis > 0) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes every pending journal record in one append, forcing it to disk if the
+     * fsync policy asks for it.
+     *
+     * @throws WalleException If the journal cannot be written; the records stay pending.
+     */
+    @Override
+    public void flush() throws WalleException {
+        try {
+            flushJournal();
+        } catch (IOException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flushJournal();
+        } catch (IOException e) {
+            synchronized (pendingRecords) {
+                flushError = e;
+            }
+        }
+    }
+
+    private void flushJournal() throws IOException {
+        synchronized (journalLock) {
+            String batch;
+            synchronized (pendingRecords) {
+                isFlushScheduled = false;
+                if (pendingRecords.length() == 0) {
+                    return;
+                }
+                batch = pendingRecords.toString();
+                pendingRecords.setLength(0);
+            }
+
+            try {
+                if (journalPath.getParent() != null) {
+                    Files.createDirectories(journalPath.getParent());
+                }
+                try (FileChannel channel = FileChannel.open(journalPath,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    String header = channel.size() == 0
+                            ? JOURNAL_HEADER + Long.toHexString(ThreadLocalRandom.current().nextLong())
+                                    + System.lineSeparator()
+                            : "";
+                    ByteBuffer bytes = ByteBuffer.wrap((header + batch).getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                        channel.force(false);
+                    }
+                }
+            } catch (IOException e) {
+                // Put the batch back in front of anything queued meanwhile, keeping the order.
+                synchronized (pendingRecords) {
+                    pendingRecords.insert(0, batch);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Applies journal records, in order, to the tasks read from the save file.
+     * A malformed final record is dropped from the file, since it can only come from a
+     * write that was cut short; a malformed record anywhere else is reported.
+     * Header lines are skipped.
+     *
+     * @param journal Journal file to replay.
+     * @param tasks Tasks to update in place.
+     * @param stopAt Header of a journal that is replayed later; if this file holds a (possibly
+     *     partial) copy of it, replay stops where the copy starts. Null to replay everything.
+     * @return Number of records applied.
+     * @throws WalleException If a record other than the last one is invalid.
+     */
+    private int replayJournal(Path journal, ArrayList<Task> tasks, String stopAt)
+            throws IOException, WalleException {
+        List<String> records = Files.readAllLines(journal);
+        int copyStart = stopAt == null ? -1 : records.indexOf(stopAt);
+        int end = copyStart == -1 ? records.size() : copyStart;
+        int applied = 0;
+        for (int i = 0; i < end; i++) {
+            String record = records.get(i);
+            if (record.trim().isEmpty() || record.startsWith("#")) {
+                continue;
+            }
+            try {
+                applyRecord(record, tasks);
+                applied++;
+            } catch (WalleException | RuntimeException e) {
+                if (i < records.size() - 1) {
+                    throw new WalleException("Invalid journal record: " + record);
+                }
+                // Drop the torn record so that later appends start on a fresh line.
+                Files.write(journal, records.subList(0, i));
+            }
+        }
+        return applied;
+    }
+
+    // The header line of a journal, or null if it has none (e.g. written by an older version)
+    private static String readHeader(Path journal) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journal)) {
+            String first = reader.readLine();
+            return first != null && first.startsWith(JOURNAL_HEADER) ? first : null;
+        }
+    }
+
+    private void applyRecord(String record, ArrayList<Task> tasks) throws WalleException {
+        int space = record.indexOf(' ');
+        if (space == -1) {
+            throw new WalleException("Invalid journal record: " + record);
+        }
+        String op = record.substring(0, space);
+        String rest = record.substring(space + 1);
+
+        switch (op) {
+        case "add":
+            Task added = parseSavedLine(rest);
+            noteId(added.getId());
+            tasks.add(added);
+            break;
+
+        case "insert":
+            int split = rest.indexOf(' ');
+            int insertIdx = Integer.parseInt(rest.substring(0, split));
+            Task inserted = parseSavedLine(rest.substring(split + 1));
+            noteId(inserted.getId());
+            tasks.add(checkIndex(insertIdx, tasks.size() + 1) - 1, inserted);
+            break;
+
+        case "delete":
+            tasks.remove(checkIndex(Integer.parseInt(rest), tasks.size()) - 1);
+            break;
+
+        case "mark":
+            tasks.get(checkIndex(Integer.parseInt(rest), tasks.size()) - 1).markDone();
+            break;
+
+        case "unmark":
+            tasks.get(checkIndex(Integer.parseInt(rest), tasks.size()) - 1).markUndone();
+            break;
+
+        default:
+            throw new WalleException("Unknown journal record: " + record);
+        }
+    }
+
+    // IDs out of range are replaced when the tasks are loaded, so they do not count
+    private void noteId(int id) {
+        if (id <= TaskList.MAX_ID) {
+            idHighWater = Math.max(idHighWater, id);
+        }
+    }
+
+    private void noteIds(List<Task> tasks) {
+        for (Task t : tasks) {
+            noteId(t.getId());
+        }
+    }
+
+    private static int parseIdHighWater(String line) throws WalleException {
+        try {
+            return Integer.parseInt(line.substring(ID_HIGH_WATER_HEADER.length()).trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new WalleException("Invalid ID high-water line: " + line);
+        }
+    }
+
+    private static int checkIndex(int idx1Based, int max) throws WalleException {
+        if (idx1Based < 1 || idx1Based > max) {
+            throw new WalleException("Journal index out of range: " + idx1Based);
+        }
+        return idx1Based;
+    }
+
+    /**
+     * Serializes a task into a single line suitable for saving to a text file.
+     * The output format uses the task ID (if it has one), a task type (T/D/E),
+     * a done flag (1/0), and any required date/time fields.
+     *
+     * @param t Task to serialize.
+     * @return A single-line string representation of the task for storage.
+     */
+    static String serializeTask(Task t) {
+        String fields = serializeFields(t);
+        return t.getId() == 0 ? fields : t.getIdTag() + " | " + fields;
+    }
+
+    private static String serializeFields(Task t) {
+        String doneBit = t.isDone() ? "1" : "0";
+
+        if (t instanceof Todo) {
+            return "T | " + doneBit + " | " + t.getDescription();
+        }
+        if (t instanceof Deadline) {
+            Deadline d = (Deadline) t;
+            return "D | " + doneBit + " | " + d.getDescription()
+                    + " | " + d.getBy().format(SAVE_DATE_TIME_FMT);
+        }
+        if (t instanceof Event) {
+            Event event = (Event) t;
+            return "E | " + doneBit + " | " + event.getDescription()
+                    + " | " + event.getFrom().format(SAVE_DATE_TIME_FMT)
+                    + " | " + event.getTo().format(SAVE_DATE_TIME_FMT);
+        }
+
+        return "T | " + doneBit + " | " + t.getDescription();
+    }
+
+    /**
+     * Parses a saved task line from the storage file and reconstructs the corresponding {@link Task}.
+     * Expected formats, each optionally preceded by a task ID such as {@code #1f | }:
+     * <ul>
+     *   <li>{@code T | 0/1 | <description>}</li>
+     *   <li>{@code D | 0/1 | <description> | <yyyy-MM-dd HHmm>}</li>
+     *   <li>{@code E | 0/1 | <description> | <start> | <end>}</li>
+     * </ul>
+     *
+     * AI-assisted : Used ChatGPT to suggest validation checks and a parsing flow
+     * for corrupted or incomplete saved lines.
+     *
+     * @param line A single line read from the save file.
+     * @return The reconstructed task represented by the saved line.
+     * @throws WalleException If the line format is invalid, incomplete, or contains invalid date/time data.
+     */
+    static Task parseSavedLine(String line) throws WalleException {
+        String[] parts = line.split("\\s*\\|\\s*");
+
+        int id = 0;
+        if (parts.length > 0 && parts[0].trim().startsWith("#")) {
+            try {
+                id = Integer.parseInt(parts[0].trim().substring(1), 16);
+            } catch (NumberFormatException e) {
+                throw new WalleException("Invalid task ID in save line: " + line);
+            }
+            parts = Arrays.copyOfRange(parts, 1, parts.length);
+        }
+
+        if (parts.length < 3) {
+            throw new WalleException("Invalid save line: " + line);
+        }
+
+        String type = parts[0].trim();
+        boolean done = parts[1].trim().equals("1");
+        String desc = parts[2].trim();
+
+        Task t;
+        try {
+            switch (type) {
+            case "T":
+                t = new Todo(desc);
+                break;
+
+            case "D":
+                if (parts.length < 4) {
+                    throw new WalleException("Invalid deadline line: " + line);
+                }
+                LocalDateTime by = LocalDateTime.parse(parts[3].trim(), SAVE_DATE_TIME_FMT);
+                t = new Deadline(desc, by);
+                break;
+
+            case "E":
+                if (parts.length < 5) {
+                    throw new WalleException("Invalid event line: " + line);
+                }
+                LocalDateTime from = LocalDateTime.parse(parts[3].trim(), SAVE_DATE_TIME_FMT);
+                LocalDateTime to = LocalDateTime.parse(parts[4].trim(), SAVE_DATE_TIME_FMT);
+                t = new Event(desc, from, to);
+                break;
+
+            default:
+                throw new WalleException("Unknown task type in save file: " + type);
+            }
+        } catch (DateTimeParseException e) {
+            throw new WalleException("Invalid date/time in save line: " + line);
+        }
+
+        if (done) {
+            t.markDone();
+        } else {
+            t.markUndone();
+        }
+        if (id > 0) {
+            t.assignId(id);
+        }
+
+        return t;
+    }
+
+}
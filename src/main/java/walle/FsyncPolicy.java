@@ -0,0 +1,11 @@
+package walle;
+
+/**
+ * Represents when journal writes are forced to the storage device.
+ */
+public enum FsyncPolicy {
+    /** Leave flushing to the operating system. */
+    NEVER,
+    /** Force every journal write (or group of coalesced writes) to disk. */
+    ALWAYS
+}
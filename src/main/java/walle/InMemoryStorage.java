@@ -0,0 +1,67 @@
+package walle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps tasks in memory only, for tests and benchmarks.
+ * Applies every recorded mutation to its own copies of the tasks, so {@link #load()} returns
+ * what a durable backend would have returned, and no task handed in or out is shared.
+ */
+public class InMemoryStorage implements Storage {
+
+    static final String LOCATION = "mem:";
+
+    private final ArrayList<Task> tasks = new ArrayList<>();
+    private int idHighWater = 0;
+
+    @Override
+    public ArrayList<Task> load() {
+        ArrayList<Task> loaded = new ArrayList<>(tasks.size());
+        for (Task t : tasks) {
+            loaded.add(t.copy());
+        }
+        return loaded;
+    }
+
+    @Override
+    public int getIdHighWater() {
+        return idHighWater;
+    }
+
+    @Override
+    public void save(List<Task> tasks) {
+        this.tasks.clear();
+        for (Task t : tasks) {
+            this.tasks.add(t.copy());
+            idHighWater = Math.max(idHighWater, t.getId());
+        }
+    }
+
+    @Override
+    public void appendAdd(Task t) {
+        tasks.add(t.copy());
+        idHighWater = Math.max(idHighWater, t.getId());
+    }
+
+    @Override
+    public void appendInsert(int idx1Based, Task t) {
+        tasks.add(idx1Based - 1, t.copy());
+        idHighWater = Math.max(idHighWater, t.getId());
+    }
+
+    @Override
+    public void appendDelete(int idx1Based) {
+        tasks.remove(idx1Based - 1);
+    }
+
+    @Override
+    public void appendMark(int idx1Based) {
+        tasks.get(idx1Based - 1).markDone();
+    }
+
+    @Override
+    public void appendUnmark(int idx1Based) {
+        tasks.get(idx1Based - 1).markUndone();
+    }
+}
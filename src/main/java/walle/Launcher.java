@@ -1,17 +1,48 @@
 package walle;
 
 /**
- * Launches the JavaFX application.
+ * Launches the JavaFX application, or runs commands headlessly with {@code --batch}.
  * This class serves as the entry point for JavaFX runtime.
  */
 
 public class Launcher {
+    private static final String USAGE = "Usage: walle [--batch [<command file> | -] [--checkpoint <commands>]]";
+
     /**
-     * Launches the JavaFX application
+     * Launches the JavaFX application, unless the arguments ask for batch mode:
+     * {@code --batch <file>} runs the commands in the file and {@code --batch} or
+     * {@code --batch -} runs those on standard input, without starting JavaFX.
+     * The tasks are saved every {@code --checkpoint <n>} commands (10000 by default, 0 for
+     * only at the end) and when the commands run out.
      * @param args
      */
 
     public static void main(String[] args) {
-        Main.launch(Main.class, args);
+        if (args.length == 0 || !args[0].equals("--batch")) {
+            Main.launch(Main.class, args);
+            return;
+        }
+
+        String path = "-";
+        int checkpointInterval = BatchRunner.DEFAULT_CHECKPOINT_INTERVAL;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--checkpoint") && i + 1 < args.length) {
+                try {
+                    checkpointInterval = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    checkpointInterval = -1;
+                }
+                if (checkpointInterval < 0) {
+                    System.err.println(USAGE);
+                    System.exit(2);
+                }
+            } else if (i == 1 && !args[i].startsWith("--")) {
+                path = args[i];
+            } else {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+        System.exit(BatchRunner.runFromPath(path, checkpointInterval));
     }
 }
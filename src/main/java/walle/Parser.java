@@ -1,8 +1,15 @@
 package walle;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Parses raw user input into command components.
@@ -13,8 +20,19 @@ public class Parser {
 
     private static final DateTimeFormatter DATE_TIME_IN_FMT =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm");
+    private static final int DATE_TIME_LENGTH = "yyyy-MM-dd HHmm".length();
+    private static final String[] DEADLINE_MARKERS = {" /by "};
+    private static final String[] EVENT_MARKERS = {" /from ", " /to "};
+    // Field offsets of the command being parsed, reused by each thread across commands
+    private static final ThreadLocal<Fields> FIELDS = ThreadLocal.withInitial(Fields::new);
+    private static final String DONE_FILTER_PREFIX = "done:";
 
 
+    // Compares in place, without making a lower-case copy of the whole input.
+    private static boolean startsWithIgnoreCase(String input, String prefix) {
+        return input.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
     /**
      * Returns whether the input is a {@code bye} command.
      *
@@ -45,6 +63,178 @@ public class Parser {
         return input.equals("list");
     }
 
+    /**
+     * Returns whether the input is a {@code list done} or {@code list pending} command.
+     *
+     * @param input Raw user input.
+     * @return True if list done or list pending; false otherwise.
+     */
+    public static boolean isListByStatus(String input) {
+        return input.equals("list done") || input.equals("list pending");
+    }
+
+    /**
+     * Returns whether the input asks for one page of the list, either as
+     * {@code list page <n>} or as {@code list --limit <n> --offset <n>}.
+     *
+     * @param input Raw user input.
+     * @return True if a paged list; false otherwise.
+     */
+    public static boolean isListPage(String input) {
+        return input.startsWith("list page") || input.startsWith("list --");
+    }
+
+    /**
+     * Parses a paged list command into the number of tasks to skip and the page length.
+     * {@code list page <n>} shows the n-th page of {@link TaskList#PAGE_SIZE} tasks; with
+     * {@code --limit} and {@code --offset}, either may be left out and they may come in any order.
+     *
+     * @param input Raw user input.
+     * @return The offset and the limit, in that order.
+     * @throws WalleException If a number is missing or invalid, or an option is unknown.
+     */
+    public static int[] parseListPage(String input) throws WalleException {
+        assert isListPage(input) : "parseListPage called when input is not a paged list command";
+        String[] parts = input.substring("list".length()).trim().split("\\s+");
+        if (parts[0].equals("page")) {
+            if (parts.length != 2) {
+                throw new WalleException("Oops — please say which page to show. (e.g., list page 3)");
+            }
+            long page = parseListNumber(parts[1], "page number", 1);
+            long offset = Math.min((page - 1) * TaskList.PAGE_SIZE, Integer.MAX_VALUE);
+            return new int[] {(int) offset, TaskList.PAGE_SIZE};
+        }
+
+        int offset = 0;
+        int limit = TaskList.PAGE_SIZE;
+        for (int i = 0; i < parts.length; i += 2) {
+            if (i + 1 == parts.length) {
+                throw new WalleException("Oops — " + parts[i] + " needs a number. "
+                        + "(e.g., list --limit 50 --offset 200)");
+            }
+            switch (parts[i]) {
+            case "--limit":
+                limit = (int) parseListNumber(parts[i + 1], "limit", 1);
+                break;
+            case "--offset":
+                offset = (int) parseListNumber(parts[i + 1], "offset", 0);
+                break;
+            default:
+                throw new WalleException("Oops — list only takes --limit and --offset. "
+                        + "(e.g., list --limit 50 --offset 200)");
+            }
+        }
+        return new int[] {offset, limit};
+    }
+
+    private static long parseListNumber(String s, String name, int min) throws WalleException {
+        int n;
+        try {
+            n = Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new WalleException("Oops — the " + name + " must be a whole number.");
+        }
+        if (n < min) {
+            throw new WalleException("Oops — the " + name + " must be at least " + min + ".");
+        }
+        return n;
+    }
+
+    /**
+     * Returns whether the input is a {@code begin} command.
+     *
+     * @param input Raw user input.
+     * @return True if begin; false otherwise.
+     */
+    public static boolean isBegin(String input) {
+        return input.equalsIgnoreCase("begin");
+    }
+
+    /**
+     * Returns whether the input is a {@code commit} command.
+     *
+     * @param input Raw user input.
+     * @return True if commit; false otherwise.
+     */
+    public static boolean isCommit(String input) {
+        return input.equalsIgnoreCase("commit");
+    }
+
+    /**
+     * Returns whether the input is a {@code rollback} command.
+     *
+     * @param input Raw user input.
+     * @return True if rollback; false otherwise.
+     */
+    public static boolean isRollback(String input) {
+        return input.equalsIgnoreCase("rollback");
+    }
+
+    /**
+     * Returns whether the input is several commands separated by {@code ;}. Only a
+     * {@code ;} followed by a command word (or by nothing) separates commands, so a
+     * description may contain one, as in {@code todo buy milk; eggs}.
+     *
+     * @param input Raw user input.
+     * @param isVerb Whether a lower-case word starts a known command.
+     * @return True if a pipeline; false otherwise.
+     */
+    public static boolean isPipeline(String input, Predicate<String> isVerb) {
+        return nextSeparator(input, 0, isVerb) >= 0;
+    }
+
+    /**
+     * Splits a pipeline into its commands, dropping empty ones.
+     *
+     * @param input Raw user input containing {@code ;}.
+     * @param isVerb Whether a lower-case word starts a known command.
+     * @return The trimmed commands, in order.
+     * @throws WalleException If there is no command at all.
+     */
+    public static String[] splitPipeline(String input, Predicate<String> isVerb) throws WalleException {
+        assert isPipeline(input, isVerb) : "splitPipeline called when input is not a pipeline";
+        List<String> steps = new ArrayList<>();
+        int start = 0;
+        for (int sep = nextSeparator(input, 0, isVerb); sep >= 0; sep = nextSeparator(input, sep + 1, isVerb)) {
+            addStep(steps, input.substring(start, sep));
+            start = sep + 1;
+        }
+        addStep(steps, input.substring(start));
+        if (steps.isEmpty()) {
+            throw new WalleException("Oops — there are no commands between the semicolons.");
+        }
+        return steps.toArray(new String[0]);
+    }
+
+    // Returns the index of the first ; at or after from that separates two commands, or -1.
+    private static int nextSeparator(String input, int from, Predicate<String> isVerb) {
+        for (int i = input.indexOf(';', from); i >= 0; i = input.indexOf(';', i + 1)) {
+            String next = CommandRegistry.verbOf(input.substring(i + 1));
+            // An empty command between two separators is dropped later
+            if (next.isEmpty() || next.charAt(0) == ';' || isVerb.test(next)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void addStep(List<String> steps, String step) {
+        String trimmed = step.trim();
+        if (!trimmed.isEmpty()) {
+            steps.add(trimmed);
+        }
+    }
+
+    /**
+     * Returns whether the input is a {@code count} command.
+     *
+     * @param input Raw user input.
+     * @return True if count; false otherwise.
+     */
+    public static boolean isCount(String input) {
+        return input.equalsIgnoreCase("count");
+    }
+
     /**
      * Returns whether the input is a {@code todo} command.
      *
@@ -82,7 +272,7 @@ public class Parser {
      * @return True if mark; false otherwise.
      */
     public static boolean isMark(String input) {
-        return input.toLowerCase().startsWith("mark ");
+        return startsWithIgnoreCase(input, "mark ");
     }
 
     /**
@@ -92,7 +282,7 @@ public class Parser {
      * @return True if unmark; false otherwise.
      */
     public static boolean isUnmark(String input) {
-        return input.toLowerCase().startsWith("unmark ");
+        return startsWithIgnoreCase(input, "unmark ");
     }
 
     /**
@@ -102,7 +292,7 @@ public class Parser {
      * @return True if delete; false otherwise.
      */
     public static boolean isDelete(String input) {
-        return input.toLowerCase().startsWith("delete ");
+        return startsWithIgnoreCase(input, "delete ");
     }
 
     /**
@@ -112,9 +302,79 @@ public class Parser {
      * @return True if find; false otherwise.
      */
     public static boolean isFind(String input) {
-        return input.toLowerCase().startsWith("find ");
+        return startsWithIgnoreCase(input, "find ");
+    }
+
+    /**
+     * Returns whether the input is a whole-word {@code find -w} command.
+     *
+     * @param input Raw user input.
+     * @return True if find -w; false otherwise.
+     */
+    public static boolean isFindWords(String input) {
+        return startsWithIgnoreCase(input, "find -w ");
+    }
+
+
+    /**
+     * Returns whether the input is an {@code overlaps} command.
+     *
+     * @param input Raw user input.
+     * @return True if overlaps; false otherwise.
+     */
+    public static boolean isOverlaps(String input) {
+        return startsWithIgnoreCase(input, "overlaps ");
+    }
+
+    /**
+     * Returns whether the input is an {@code on} command.
+     *
+     * @param input Raw user input.
+     * @return True if on; false otherwise.
+     */
+    public static boolean isOn(String input) {
+        return startsWithIgnoreCase(input, "on ");
+    }
+
+    /**
+     * Returns whether the input is a {@code free} command.
+     *
+     * @param input Raw user input.
+     * @return True if free; false otherwise.
+     */
+    public static boolean isFree(String input) {
+        return startsWithIgnoreCase(input, "free ");
+    }
+
+    /**
+     * Returns whether the input is a {@code due} command.
+     *
+     * @param input Raw user input.
+     * @return True if due; false otherwise.
+     */
+    public static boolean isDue(String input) {
+        return startsWithIgnoreCase(input, "due ");
+    }
+
+    /**
+     * Returns whether the input is an {@code upcoming} command.
+     *
+     * @param input Raw user input.
+     * @return True if upcoming; false otherwise.
+     */
+    public static boolean isUpcoming(String input) {
+        return startsWithIgnoreCase(input, "upcoming ");
     }
 
+    /**
+     * Returns whether the input is an {@code overdue} command.
+     *
+     * @param input Raw user input.
+     * @return True if overdue; false otherwise.
+     */
+    public static boolean isOverdue(String input) {
+        return input.equalsIgnoreCase("overdue") || startsWithIgnoreCase(input, "overdue ");
+    }
 
     /**
      * Extracts the description portion of a {@code todo} command.
@@ -154,6 +414,23 @@ public class Parser {
         return keyword;
     }
 
+    /**
+     * Returns the words of a {@code find -w} command.
+     *
+     * @param input Raw user input beginning with {@code find -w}.
+     * @return Words to search for.
+     * @throws WalleException If no words are given.
+     */
+    public static String parseFindWords(String input) throws WalleException {
+        assert input != null : "input should not be null";
+        assert isFindWords(input) : "parseFindWords called when input is not a find -w command";
+        String words = input.substring(8).trim(); // after "find -w "
+        if (words.isEmpty()) {
+            throw new WalleException("Oops — please provide words to find. (e.g., find -w team meeting)");
+        }
+        return words;
+    }
+
     /**
      * Parses and validates a 1-based task index from user input.
      * Ensures the index is present, numeric, and within valid bounds.
@@ -195,6 +472,36 @@ public class Parser {
         return idx;
     }
 
+    /**
+     * Resolves a task reference that is either a 1-based task number or a task ID
+     * such as {@code #1f}.
+     *
+     * @param s Raw task reference provided by the user.
+     * @param commandName Name of the command using the reference (for error messages).
+     * @param tasks Current task list, used to look up IDs and validate numbers.
+     * @return The 1-based index of the referenced task.
+     * @throws WalleException If the reference is missing, invalid, or matches no task.
+     */
+    private static int parseTaskRef(String s, String commandName, TaskList tasks) throws WalleException {
+        if (!s.startsWith("#")) {
+            return parseIndex(s, commandName, tasks.size());
+        }
+
+        int id;
+        try {
+            id = Integer.parseInt(s.substring(1), 16);
+        } catch (NumberFormatException e) {
+            throw new WalleException("Oops — a task ID looks like #1f. (e.g., " + commandName + " #1f)");
+        }
+
+        int idx = tasks.indexOfId(id);
+        if (idx == -1) {
+            throw new WalleException("Oops — there is no task with ID " + s
+                    + ". Use 'list' to see task IDs.");
+        }
+        return idx;
+    }
+
     /**
      * Parses a {@code deadline} command and constructs a {@link Deadline} task.
      * Expected format: {@code deadline <description> /by <yyyy-MM-dd HHmm>}.
@@ -209,25 +516,20 @@ public class Parser {
     public static Deadline parseDeadline(String input) throws WalleException {
         assert input != null : "input should not be null";
         assert isDeadline(input) : "parseDeadline called when input is not a deadline command";
-        int byPos = input.indexOf(" /by ");
-        if (byPos == -1) {
+        // Fields are located by offsets; only the description is copied out.
+        Fields fields = FIELDS.get();
+        if (!fields.split(input, "deadline ".length(), DEADLINE_MARKERS)) {
             throw new WalleException("Oops — deadline format should be:\n"
                                         + "  deadline <description> /by <yyyy-MM-dd HHmm>");
         }
-        String desc = input.substring("deadline ".length(), byPos).trim();
-        String byStr = input.substring(byPos + " /by ".length()).trim();
-        if (desc.isEmpty()) {
+        if (fields.isEmpty(0)) {
             throw new WalleException("Oops — the description of a deadline cannot be empty.");
         }
-        if (byStr.isEmpty()) {
+        if (fields.isEmpty(1)) {
             throw new WalleException("Oops — the /by part of a deadline cannot be empty.");
         }
-        try {
-            LocalDateTime by = LocalDateTime.parse(byStr, DATE_TIME_IN_FMT);
-            return new Deadline(desc, by);
-        } catch (DateTimeParseException e) {
-            throw new WalleException("Oops — use yyyy-MM-dd HHmm (e.g., 2019-10-15 1800).");
-        }
+        LocalDateTime by = parseDateTime(input, fields.start(1), fields.end(1));
+        return new Deadline(input.substring(fields.start(0), fields.end(0)), by);
     }
 
 
@@ -247,89 +549,290 @@ public class Parser {
     public static Event parseEvent(String input) throws WalleException {
         assert input != null : "input should not be null";
         assert isEvent(input) : "parseEvent called when input is not an event command";
-        int fromPos = input.indexOf(" /from ");
-        int toPos = input.indexOf(" /to ");
-
-        if (fromPos == -1 || toPos == -1 || toPos < fromPos) {
+        Fields fields = FIELDS.get();
+        if (!fields.split(input, "event ".length(), EVENT_MARKERS)) {
             throw new WalleException("Oops — event format should be:\n  event <description> /from <start> /to <end>");
         }
-
-        String desc = input.substring("event ".length(), fromPos).trim();
-        String fromStr = input.substring(fromPos + " /from ".length(), toPos).trim();
-        String toStr = input.substring(toPos + " /to ".length()).trim();
-
-        if (desc.isEmpty()) {
+        if (fields.isEmpty(0)) {
             throw new WalleException("Oops — the description of an event cannot be empty.");
         }
-        if (fromStr.isEmpty()) {
+        if (fields.isEmpty(1)) {
             throw new WalleException("Oops — the /from part of an event cannot be empty.");
         }
-        if (toStr.isEmpty()) {
+        if (fields.isEmpty(2)) {
             throw new WalleException("Oops — the /to part of an event cannot be empty.");
         }
 
+        LocalDateTime from = parseDateTime(input, fields.start(1), fields.end(1));
+        LocalDateTime to = parseDateTime(input, fields.start(2), fields.end(2));
+        if (to.isBefore(from)) {
+            throw new WalleException("Oops — event end time must be after start time.");
+        }
+        return new Event(input.substring(fields.start(0), fields.end(0)), from, to);
+    }
+
+    /**
+     * Parses a {@code yyyy-MM-dd HHmm} date and time from part of the input.
+     * Plainly valid values are decoded digit by digit without any intermediate objects;
+     * anything else goes through {@link DateTimeFormatter}, so the two agree on every input,
+     * including its leniency such as Feb 30 becoming Feb 28.
+     *
+     * @param s Text holding the date and time.
+     * @param start Index of its first character.
+     * @param end Index just after its last character.
+     * @return The date and time.
+     * @throws WalleException If the text is not a valid date and time.
+     */
+    static LocalDateTime parseDateTime(CharSequence s, int start, int end) throws WalleException {
+        if (end - start == DATE_TIME_LENGTH && s.charAt(start + 4) == '-' && s.charAt(start + 7) == '-'
+                && s.charAt(start + 10) == ' ') {
+            int year = digits(s, start, 4);
+            int month = digits(s, start + 5, 2);
+            int day = digits(s, start + 8, 2);
+            int hour = digits(s, start + 11, 2);
+            int minute = digits(s, start + 13, 2);
+            if (year >= 1 && month >= 1 && month <= 12 && day >= 1 && hour >= 0 && hour <= 23
+                    && minute >= 0 && minute <= 59 && day <= Month.of(month).length(Year.isLeap(year))) {
+                return LocalDateTime.of(year, month, day, hour, minute);
+            }
+        }
         try {
-            LocalDateTime from = LocalDateTime.parse(fromStr, DATE_TIME_IN_FMT);
-            LocalDateTime to = LocalDateTime.parse(toStr, DATE_TIME_IN_FMT);
+            return LocalDateTime.parse(s.subSequence(start, end), DATE_TIME_IN_FMT);
+        } catch (DateTimeParseException e) {
+            throw new WalleException("Oops — use yyyy-MM-dd HHmm (e.g., 2019-10-15 1800).");
+        }
+    }
 
-            if (to.isBefore(from)) {
-                throw new WalleException("Oops — event end time must be after start time.");
+    // Decodes a run of ASCII digits, or returns -1 if any character is not one.
+    private static int digits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Start and end offsets of the fields of one command, e.g. the description, {@code /from}
+     * and {@code /to} of an event, each trimmed as {@link String#trim()} would. One instance
+     * per thread is reused for every command, so locating the fields allocates nothing.
+     */
+    private static final class Fields {
+        private final int[] bounds = new int[2 * (EVENT_MARKERS.length + 1)];
+
+        /**
+         * Splits the input at the markers, taken in the given order. Each marker is looked for
+         * after the end of the one before it, so an earlier field may contain a later marker's
+         * text. Field 0 runs from {@code from} to the first marker, field i from the end of
+         * marker i to the next marker or the end of the input.
+         *
+         * @return False if a marker is missing or out of order.
+         */
+        boolean split(String input, int from, String[] markers) {
+            assert markers.length < bounds.length / 2 : "too many fields for the scratch";
+            int fieldStart = from;
+            for (int i = 0; i <= markers.length; i++) {
+                int fieldEnd = i < markers.length ? input.indexOf(markers[i], fieldStart) : input.length();
+                if (fieldEnd == -1) {
+                    return false;
+                }
+                // A marker right after the verb leaves an empty field, not a missing one.
+                int start = skipSpaces(input, fieldStart, fieldEnd);
+                bounds[2 * i] = start;
+                bounds[2 * i + 1] = trimEnd(input, start, fieldEnd);
+                if (i < markers.length) {
+                    fieldStart = fieldEnd + markers[i].length();
+                }
             }
+            return true;
+        }
 
-            return new Event(desc, from, to);
+        int start(int field) {
+            return bounds[2 * field];
+        }
 
-        } catch (DateTimeParseException e) {
-            throw new WalleException("Oops — use yyyy-MM-dd HHmm (e.g., 2019-10-15 1800).");
+        int end(int field) {
+            return bounds[2 * field + 1];
+        }
+
+        boolean isEmpty(int field) {
+            return end(field) <= start(field);
+        }
+    }
+
+    // Returns the first index in [from, to) that String.trim() would keep, or to.
+    private static int skipSpaces(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
         }
+        return from;
+    }
+
+    // Returns the index just after the last character in [from, to) that String.trim() would keep, or from.
+    private static int trimEnd(CharSequence s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
     }
 
     /**
-     * Extracts the task index from a {@code mark} command.
-     *
-     *  AI assisted: Used ChatGPT to use small wrapper methods to reuse parseIndex()
+     * Parses the time range of an {@code overlaps} command.
+     * Expected format: {@code overlaps <yyyy-MM-dd HHmm> <yyyy-MM-dd HHmm>}.
      *
-     * @param input Raw user input beginning with {@code mark}.
-     * @param taskCount Current number of tasks (for bounds validation).
-     * @return The 1-based task index.
-     * @throws WalleException If the index is missing, non-numeric, or out of range.
+     * @param input Raw user input beginning with {@code overlaps}.
+     * @return The start and end of the range, in that order.
+     * @throws WalleException If the range is missing, cannot be parsed, or ends before it starts.
      */
-    public static int parseMarkIndex(String input, int taskCount) throws WalleException {
+    public static LocalDateTime[] parseOverlapsRange(String input) throws WalleException {
         assert input != null : "input should not be null";
-        assert isMark(input) : "parseMarkIndex called when input is not a mark command";
-        return parseIndex(input.substring(5).trim(), "mark", taskCount);
+        assert isOverlaps(input) : "parseOverlapsRange called when input is not an overlaps command";
+        String[] parts = input.substring("overlaps ".length()).trim().split("\\s+");
+        if (parts.length != 4) {
+            throw new WalleException("Oops — overlaps format should be:\n"
+                    + "  overlaps <yyyy-MM-dd HHmm> <yyyy-MM-dd HHmm>");
+        }
+        String fromStr = parts[0] + " " + parts[1];
+        String toStr = parts[2] + " " + parts[3];
+        LocalDateTime from = parseDateTime(fromStr, 0, fromStr.length());
+        LocalDateTime to = parseDateTime(toStr, 0, toStr.length());
+        if (to.isBefore(from)) {
+            throw new WalleException("Oops — the end of the range must be after its start.");
+        }
+        return new LocalDateTime[] {from, to};
     }
 
+    /**
+     * Parses the date of an {@code on} or {@code free} command, e.g. {@code on 2019-10-15}.
+     *
+     * @param input Raw user input beginning with the command name.
+     * @param commandName Name of the command (for error messages).
+     * @return The parsed date.
+     * @throws WalleException If the date is missing or cannot be parsed.
+     */
+    public static LocalDate parseDay(String input, String commandName) throws WalleException {
+        assert input != null : "input should not be null";
+        String dayStr = input.substring(commandName.length()).trim();
+        try {
+            return LocalDate.parse(dayStr);
+        } catch (DateTimeParseException e) {
+            throw new WalleException("Oops — use yyyy-MM-dd (e.g., " + commandName + " 2019-10-15).");
+        }
+    }
 
     /**
-     * Parses the task index from an {@code unmark} command.
+     * Parses the date of a {@code due} command, e.g. {@code due 2019-10-15 done:0}.
      *
-     * Expected format: {@code unmark <task number>}.
+     * @param input Raw user input beginning with {@code due}.
+     * @return The last day to include.
+     * @throws WalleException If the date is missing or cannot be parsed.
+     */
+    public static LocalDate parseDueDate(String input) throws WalleException {
+        assert isDue(input) : "parseDueDate called when input is not a due command";
+        try {
+            return LocalDate.parse(stripDoneFilter(input.substring("due ".length())));
+        } catch (DateTimeParseException e) {
+            throw new WalleException("Oops — use yyyy-MM-dd (e.g., due 2019-10-15).");
+        }
+    }
+
+    /**
+     * Parses how many deadlines an {@code upcoming} command asks for, e.g. {@code upcoming 5}.
      *
-     * @param input Raw user input beginning with {@code unmark}.
-     * @param taskCount Total number of tasks currently stored.
-     * @return Parsed valid task index (1-based).
-     * @throws WalleException If the index is missing, invalid, or out of range.
+     * @param input Raw user input beginning with {@code upcoming}.
+     * @return The number of deadlines to list.
+     * @throws WalleException If the number is missing, not an integer, or not positive.
      */
-    public static int parseUnmarkIndex(String input, int taskCount) throws WalleException {
-        assert input != null : "input should not be null";
-        assert isUnmark(input) : "parseUnmarkIndex called when input is not an unmark command";
-        return parseIndex(input.substring(7).trim(), "unmark", taskCount);
+    public static int parseUpcomingCount(String input) throws WalleException {
+        assert isUpcoming(input) : "parseUpcomingCount called when input is not an upcoming command";
+        int count;
+        try {
+            count = Integer.parseInt(stripDoneFilter(input.substring("upcoming ".length())));
+        } catch (NumberFormatException e) {
+            throw new WalleException("Oops — please say how many deadlines to show. (e.g., upcoming 5)");
+        }
+        if (count < 1) {
+            throw new WalleException("Oops — the number of deadlines must be at least 1.");
+        }
+        return count;
     }
 
     /**
-     * Parses the task index from a {@code delete} command.
+     * Parses the optional {@code done:0} or {@code done:1} filter at the end of a command.
      *
-     * Expected format: {@code delete <task number>}.
+     * @param input Raw user input.
+     * @return False for {@code done:0}, true for {@code done:1}, or null if there is no filter.
+     * @throws WalleException If the filter is neither {@code done:0} nor {@code done:1}.
+     */
+    public static Boolean parseDoneFilter(String input) throws WalleException {
+        String last = input.substring(input.trim().lastIndexOf(' ') + 1).trim();
+        if (!last.startsWith(DONE_FILTER_PREFIX)) {
+            return null;
+        }
+        switch (last.substring(DONE_FILTER_PREFIX.length())) {
+        case "0":
+            return false;
+        case "1":
+            return true;
+        default:
+            throw new WalleException("Oops — the status filter should be done:0 or done:1.");
+        }
+    }
+
+    /**
+     * Parses the tasks a {@code mark}, {@code unmark} or {@code delete} command applies to.
+     * Besides a single task number or #id, the command takes a comma-separated list of
+     * numbers, #ids and ranges such as {@code 12-20}, or {@code all} with an optional
+     * {@code done:0} or {@code done:1} filter.
      *
-     * @param input Raw user input beginning with {@code delete}.
-     * @param taskCount Total number of tasks currently stored.
-     * @return Parsed valid task index (1-based).
-     * @throws WalleException If the index is missing, invalid, or out of range.
+     * @param input Raw user input beginning with the command word.
+     * @param commandName The command word, e.g. {@code mark}.
+     * @param tasks Current task list (for ID lookup and bounds validation).
+     * @return The 1-based task indexes, in increasing order and without repeats.
+     * @throws WalleException If any reference is missing, invalid, or matches no task.
      */
-    public static int parseDeleteIndex(String input, int taskCount) throws WalleException {
-        //assert input != null : "input should not be null";
-        // assert isMark(input) : "parseMarkIndex called when input is not a delete command";
-        return parseIndex(input.substring(7).trim(), "delete", taskCount);
+    public static int[] parseTaskRefs(String input, String commandName, TaskList tasks) throws WalleException {
+        String refs = input.substring(commandName.length() + 1).trim();
+        if (refs.equals("all") || refs.startsWith("all ")) {
+            Boolean isDone = parseDoneFilter(refs);
+            if (!stripDoneFilter(refs).equals("all")) {
+                throw new WalleException("Oops — use " + commandName
+                        + " all, optionally followed by done:0 or done:1.");
+            }
+            return tasks.positionsWithStatus(isDone);
+        }
+
+        BitSet chosen = new BitSet();
+        for (String part : refs.split(",", -1)) {
+            String ref = part.trim();
+            int dash = ref.indexOf('-');
+            if (dash <= 0) {
+                chosen.set(parseTaskRef(ref, commandName, tasks));
+                continue;
+            }
+            int from = parseIndex(ref.substring(0, dash).trim(), commandName, tasks.size());
+            int to = parseIndex(ref.substring(dash + 1).trim(), commandName, tasks.size());
+            if (to < from) {
+                throw new WalleException("Oops — a range goes from the lower task number to the higher one. "
+                        + "(e.g., " + commandName + " 1-5)");
+            }
+            chosen.set(from, to + 1);
+        }
+        return chosen.stream().toArray();
+    }
+
+    // Drops a trailing done:0 / done:1 filter from command arguments
+    private static String stripDoneFilter(String args) {
+        String trimmed = args.trim();
+        int lastSpace = trimmed.lastIndexOf(' ');
+        if (trimmed.substring(lastSpace + 1).startsWith(DONE_FILTER_PREFIX)) {
+            return trimmed.substring(0, Math.max(lastSpace, 0)).trim();
+        }
+        return trimmed;
     }
 
     public static boolean isUndo(String input) {
@@ -0,0 +1,9 @@
+package walle;
+
+/**
+ * Represents the on-disk layout of the save file.
+ */
+public enum SaveFormat {
+    TEXT,
+    BINARY
+}
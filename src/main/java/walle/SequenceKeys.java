@@ -0,0 +1,119 @@
+package walle;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the list-order keys of stored tasks, position by position.
+ * Keys grow by {@link #GAP} on append, so a task inserted in the middle (e.g. by undoing a
+ * delete) usually gets a key between its neighbours without touching any other key.
+ * Backends that store tasks out of list order use these keys to restore it on load.
+ */
+final class SequenceKeys {
+
+    static final long GAP = 1L << 16;
+
+    private final ArrayList<Long> keys = new ArrayList<>();
+
+    void clear() {
+        keys.clear();
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /**
+     * Returns the key of the task at the given 1-based index.
+     */
+    long get(int idx1Based) {
+        return keys.get(idx1Based - 1);
+    }
+
+    /**
+     * Records the key of a task read back from storage, in list order.
+     */
+    void addLoaded(long key) {
+        keys.add(key);
+    }
+
+    /**
+     * Allocates the key for a task added to the end of the list.
+     */
+    long append() {
+        long key = keys.isEmpty() ? GAP : keys.get(keys.size() - 1) + GAP;
+        keys.add(key);
+        return key;
+    }
+
+    /**
+     * Allocates a key for a task inserted at the given 1-based index.
+     *
+     * @return The new key, or -1 if there is no room left between the neighbours;
+     *         call {@link #renumber()} and try again in that case.
+     */
+    long insert(int idx1Based) {
+        long before = idx1Based > 1 ? keys.get(idx1Based - 2) : 0;
+        long after = idx1Based <= keys.size() ? keys.get(idx1Based - 1) : before + 2 * GAP;
+        if (after - before < 2) {
+            return -1;
+        }
+        long key = before + (after - before) / 2;
+        keys.add(idx1Based - 1, key);
+        return key;
+    }
+
+    /**
+     * Forgets the key of the task deleted at the given 1-based index.
+     *
+     * @return The removed key.
+     */
+    long remove(int idx1Based) {
+        return keys.remove(idx1Based - 1);
+    }
+
+    /**
+     * Spreads all keys {@link #GAP} apart again.
+     *
+     * @return The keys before renumbering, in list order.
+     */
+    long[] renumber() {
+        long[] old = new long[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            old[i] = keys.get(i);
+            keys.set(i, (i + 1) * GAP);
+        }
+        return old;
+    }
+
+    /**
+     * Gives every entry without a key (0) one between the keys of its neighbours, spreading a
+     * run of such entries evenly over the gap; after the last key, keys are {@link #GAP} apart.
+     * Used by full saves that keep the keys of tasks already stored.
+     *
+     * @param keys Keys in list order, increasing apart from the zeros to fill in.
+     * @return False if some run does not fit into its gap; the keys are then incomplete.
+     */
+    static boolean fillGaps(long[] keys) {
+        int i = 0;
+        while (i < keys.length) {
+            if (keys[i] != 0) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            while (i < keys.length && keys[i] == 0) {
+                i++;
+            }
+            int run = i - runStart;
+            long before = runStart > 0 ? keys[runStart - 1] : 0;
+            long after = i < keys.length ? keys[i] : before + (run + 1) * GAP;
+            if (after - before <= run) {
+                return false;
+            }
+            for (int j = 0; j < run; j++) {
+                keys[runStart + j] = before + (after - before) * (j + 1) / (run + 1);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,445 @@
+package walle;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Stores tasks in one shard file per month inside a directory, e.g. {@code 2025-02.txt},
+ * keyed on {@link Deadline#getBy()} or {@link Event#getFrom()}, plus {@code undated.txt}
+ * for todos. Each line is a {@link SequenceKeys} key followed by the usual save line:
+ * {@code <key> | D | 0 | return book | 2019-10-15T18:00:00}.
+ *
+ * Only the key, shard and ID of each task are kept in memory. A shard's lines are read
+ * when a mutation needs them and dropped once the shard is written back, so marking one
+ * task in a long history reads and rewrites one small file. A full {@link #save(List)}
+ * keeps the key of every task already stored, so only the shards whose contents differ
+ * are rewritten. A single month can be read on demand through {@link #loadShard(YearMonth)}.
+ *
+ * The highest task ID ever stored is kept in a {@code max-id} file, which is only rewritten
+ * when a task whose ID is above the recorded value is deleted; IDs still in a shard are
+ * found on load anyway.
+ */
+public class ShardedStorage implements Storage {
+
+    static final String LOCATION_PREFIX = "shards:";
+
+    private static final String UNDATED_SHARD = "undated";
+    private static final String SHARD_SUFFIX = ".txt";
+    private static final DateTimeFormatter SHARD_FMT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final String KEY_SEPARATOR = " | ";
+    private static final String ID_HIGH_WATER_FILE = "max-id";
+
+    private final Path dir;
+    // Key, shard name and task ID of each task, in list order
+    private final SequenceKeys keys = new SequenceKeys();
+    private final ArrayList<String> shardOf = new ArrayList<>();
+    private final ArrayList<Integer> ids = new ArrayList<>();
+    // Lines of the shards changed since the last flush, by key; written and dropped by flush()
+    private final Map<String, TreeMap<Long, String>> dirtyShards = new HashMap<>();
+    // Depth of nested beginBatch() calls; dirty shards are written once the outermost ends
+    private int batchDepth = 0;
+    // Highest task ID seen, and the value in the max-id file
+    private int idHighWater = 0;
+    private int storedIdHighWater = 0;
+    // Whether a task with an ID above the stored high-water mark was deleted since the last flush
+    private boolean isIdHighWaterDue = false;
+
+    /**
+     * Creates a storage handler for the shard files in the given directory.
+     *
+     * @param dirPath Directory holding the shard files.
+     */
+    public ShardedStorage(String dirPath) {
+        this.dir = Paths.get(dirPath);
+    }
+
+    @Override
+    public ArrayList<Task> load() throws WalleException {
+        keys.clear();
+        shardOf.clear();
+        ids.clear();
+        dirtyShards.clear();
+        storedIdHighWater = readIdHighWater();
+        idHighWater = storedIdHighWater;
+        isIdHighWaterDue = false;
+
+        List<Placed> entries = new ArrayList<>();
+        for (String name : shardNames()) {
+            for (Map.Entry<Long, String> line : readShard(name).entrySet()) {
+                entries.add(new Placed(line.getKey(), name, parseLine(name, line.getValue())));
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(e -> e.key));
+        ArrayList<Task> tasks = new ArrayList<>(entries.size());
+        for (Placed entry : entries) {
+            keys.addLoaded(entry.key);
+            shardOf.add(entry.shard);
+            ids.add(entry.task.getId());
+            noteId(entry.task.getId());
+            tasks.add(entry.task);
+        }
+        return tasks;
+    }
+
+    @Override
+    public int getIdHighWater() {
+        return idHighWater;
+    }
+
+    /**
+     * Reads the tasks of a single month without loading the other shards.
+     *
+     * @param month Month whose deadlines and events are wanted.
+     * @return Tasks of that month in list order; empty if the shard does not exist.
+     * @throws WalleException If the shard file cannot be read or is corrupted.
+     */
+    public List<Task> loadShard(YearMonth month) throws WalleException {
+        String name = month.format(SHARD_FMT);
+        TreeMap<Long, String> shard = dirtyShards.containsKey(name) ? dirtyShards.get(name) : readShard(name);
+        List<Task> tasks = new ArrayList<>();
+        for (String line : shard.values()) {
+            tasks.add(parseLine(name, line));
+        }
+        return tasks;
+    }
+
+    /**
+     * Replaces the stored tasks with the given ones. Tasks already stored, recognised by
+     * their ID, keep their keys as long as they stay in order, so a task added or removed
+     * changes only its own shard; every shard file is compared, and only those whose
+     * lines differ are rewritten.
+     *
+     * @param newTasks The tasks to be saved.
+     * @throws WalleException If the shard files cannot be read or written.
+     */
+    @Override
+    public void save(List<Task> newTasks) throws WalleException {
+        HashMap<Integer, Long> keyById = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i) > 0) {
+                keyById.put(ids.get(i), keys.get(i + 1));
+            }
+        }
+        long[] newKeys = new long[newTasks.size()];
+        long lastKept = 0;
+        for (int i = 0; i < newKeys.length; i++) {
+            Long key = keyById.remove(newTasks.get(i).getId());
+            if (key != null && key > lastKept) {
+                newKeys[i] = key;
+                lastKept = key;
+            }
+        }
+        // The IDs left over belong to tasks that are gone
+        for (int id : keyById.keySet()) {
+            isIdHighWaterDue |= id > storedIdHighWater;
+        }
+        if (!SequenceKeys.fillGaps(newKeys)) {
+            Arrays.fill(newKeys, 0);
+            SequenceKeys.fillGaps(newKeys);
+        }
+
+        Map<String, TreeMap<Long, String>> shards = new HashMap<>();
+        keys.clear();
+        shardOf.clear();
+        ids.clear();
+        for (int i = 0; i < newKeys.length; i++) {
+            Task t = newTasks.get(i);
+            String name = shardName(t);
+            shards.computeIfAbsent(name, n -> new TreeMap<>()).put(newKeys[i], FileStorage.serializeTask(t));
+            keys.addLoaded(newKeys[i]);
+            shardOf.add(name);
+            ids.add(t.getId());
+            noteId(t.getId());
+        }
+
+        // Shards that end up empty must be rewritten too, which deletes their files.
+        Set<String> names = new HashSet<>(shardNames());
+        names.addAll(shards.keySet());
+        dirtyShards.clear();
+        for (String name : names) {
+            TreeMap<Long, String> shard = shards.getOrDefault(name, new TreeMap<>());
+            if (!shard.equals(readShard(name))) {
+                dirtyShards.put(name, shard);
+            }
+        }
+        flush();
+    }
+
+    @Override
+    public void appendAdd(Task t) throws WalleException {
+        place(keys.append(), t);
+        flushUnlessBatched();
+    }
+
+    @Override
+    public void appendInsert(int idx1Based, Task t) throws WalleException {
+        long key = keys.insert(idx1Based);
+        if (key < 0) {
+            renumber();
+            key = keys.insert(idx1Based);
+        }
+        shardOf.add(idx1Based - 1, shardName(t));
+        ids.add(idx1Based - 1, t.getId());
+        noteId(t.getId());
+        shard(shardName(t)).put(key, FileStorage.serializeTask(t));
+        flushUnlessBatched();
+    }
+
+    @Override
+    public void appendDelete(int idx1Based) throws WalleException {
+        long key = keys.remove(idx1Based);
+        isIdHighWaterDue |= ids.remove(idx1Based - 1) > storedIdHighWater;
+        shard(shardOf.remove(idx1Based - 1)).remove(key);
+        flushUnlessBatched();
+    }
+
+    @Override
+    public void appendMark(int idx1Based) throws WalleException {
+        setDone(idx1Based, true);
+        flushUnlessBatched();
+    }
+
+    @Override
+    public void appendUnmark(int idx1Based) throws WalleException {
+        setDone(idx1Based, false);
+        flushUnlessBatched();
+    }
+
+    /**
+     * Starts a batch: shards changed until it ends are rewritten once, when it ends.
+     */
+    @Override
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch; once the outermost one ends, each shard it touched is rewritten once.
+     *
+     * @throws WalleException If a shard cannot be written.
+     */
+    @Override
+    public void endBatch() throws WalleException {
+        assert batchDepth > 0 : "endBatch without beginBatch";
+        batchDepth--;
+        flushUnlessBatched();
+    }
+
+    private void flushUnlessBatched() throws WalleException {
+        if (batchDepth == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Rewrites every shard changed since the last flush and forgets its lines; empty shards
+     * are deleted. The {@code max-id} file is rewritten first if the highest ID may no
+     * longer be in any shard.
+     *
+     * @throws WalleException If a shard cannot be written; the changes stay pending.
+     */
+    @Override
+    public void flush() throws WalleException {
+        try {
+            Files.createDirectories(dir);
+            if (isIdHighWaterDue) {
+                Path tmp = dir.resolve(ID_HIGH_WATER_FILE + ".tmp");
+                Files.write(tmp, List.of(Integer.toHexString(idHighWater)));
+                Files.move(tmp, dir.resolve(ID_HIGH_WATER_FILE),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                storedIdHighWater = idHighWater;
+                isIdHighWaterDue = false;
+            }
+            Iterator<Map.Entry<String, TreeMap<Long, String>>> pending = dirtyShards.entrySet().iterator();
+            while (pending.hasNext()) {
+                Map.Entry<String, TreeMap<Long, String>> shard = pending.next();
+                Path file = shardPath(shard.getKey());
+                if (shard.getValue().isEmpty()) {
+                    Files.deleteIfExists(file);
+                } else {
+                    Path tmp = dir.resolve(shard.getKey() + SHARD_SUFFIX + ".tmp");
+                    Files.write(tmp, render(shard.getValue()));
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                pending.remove();
+            }
+
+        } catch (IOException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    private void place(long key, Task t) throws WalleException {
+        String name = shardName(t);
+        shardOf.add(name);
+        ids.add(t.getId());
+        noteId(t.getId());
+        shard(name).put(key, FileStorage.serializeTask(t));
+    }
+
+    // IDs out of range are replaced when the tasks are loaded, so they do not count
+    private void noteId(int id) {
+        if (id <= TaskList.MAX_ID) {
+            idHighWater = Math.max(idHighWater, id);
+        }
+    }
+
+    private int readIdHighWater() throws WalleException {
+        Path file = dir.resolve(ID_HIGH_WATER_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(Files.readString(file).trim(), 16);
+        } catch (IOException | NumberFormatException e) {
+            throw new WalleException("Warning: " + ID_HIGH_WATER_FILE + " file is unreadable. " + e.getMessage());
+        }
+    }
+
+    private void setDone(int idx1Based, boolean isDone) throws WalleException {
+        String name = shardOf.get(idx1Based - 1);
+        long key = keys.get(idx1Based);
+        TreeMap<Long, String> shard = shard(name);
+        Task t = parseLine(name, shard.get(key));
+        if (isDone) {
+            t.markDone();
+        } else {
+            t.markUndone();
+        }
+        shard.put(key, FileStorage.serializeTask(t));
+    }
+
+    /**
+     * Spreads the keys out again once no gap is left between two neighbours. Every key
+     * changes, so every shard is read and rewritten.
+     */
+    private void renumber() throws WalleException {
+        for (String name : new HashSet<>(shardOf)) {
+            shard(name);
+        }
+        Map<String, TreeMap<Long, String>> renumbered = new HashMap<>();
+        long[] old = keys.renumber();
+        for (int i = 0; i < old.length; i++) {
+            String name = shardOf.get(i);
+            renumbered.computeIfAbsent(name, n -> new TreeMap<>())
+                    .put(keys.get(i + 1), dirtyShards.get(name).get(old[i]));
+        }
+        dirtyShards.putAll(renumbered);
+    }
+
+    // The lines of a shard, pending changes included; a shard read here stays until flushed
+    private TreeMap<Long, String> shard(String name) throws WalleException {
+        TreeMap<Long, String> shard = dirtyShards.get(name);
+        if (shard == null) {
+            shard = readShard(name);
+            dirtyShards.put(name, shard);
+        }
+        return shard;
+    }
+
+    // The lines of a shard file by key; a missing shard has none
+    private TreeMap<Long, String> readShard(String name) throws WalleException {
+        TreeMap<Long, String> shard = new TreeMap<>();
+        Path file = shardPath(name);
+        if (!Files.exists(file)) {
+            return shard;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file);
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                int split = line.indexOf(KEY_SEPARATOR);
+                try {
+                    shard.put(Long.parseLong(line.substring(0, split)), line.substring(split + KEY_SEPARATOR.length()));
+                } catch (RuntimeException e) {
+                    throw new WalleException("Invalid shard line in " + file.getFileName()
+                            + " (line " + (i + 1) + "): " + line);
+                }
+            }
+        } catch (IOException e) {
+            throw new WalleException("Warning: shard files are unreadable. " + e.getMessage());
+        }
+        return shard;
+    }
+
+    private List<String> shardNames() throws WalleException {
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return names;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SHARD_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                names.add(name.substring(0, name.length() - SHARD_SUFFIX.length()));
+            }
+        } catch (IOException e) {
+            throw new WalleException("Warning: shard files are unreadable. " + e.getMessage());
+        }
+        return names;
+    }
+
+    private static Task parseLine(String shardName, String line) throws WalleException {
+        try {
+            return FileStorage.parseSavedLine(line);
+        } catch (WalleException e) {
+            throw new WalleException("Invalid shard line in " + shardName + SHARD_SUFFIX + ": " + line);
+        }
+    }
+
+    private static List<String> render(TreeMap<Long, String> shard) {
+        ArrayList<String> lines = new ArrayList<>(shard.size());
+        for (Map.Entry<Long, String> entry : shard.entrySet()) {
+            lines.add(entry.getKey() + KEY_SEPARATOR + entry.getValue());
+        }
+        return lines;
+    }
+
+    private Path shardPath(String name) {
+        return dir.resolve(name + SHARD_SUFFIX);
+    }
+
+    private static String shardName(Task t) {
+        if (t instanceof Deadline) {
+            return ((Deadline) t).getBy().format(SHARD_FMT);
+        }
+        if (t instanceof Event) {
+            return ((Event) t).getFrom().format(SHARD_FMT);
+        }
+        return UNDATED_SHARD;
+    }
+
+    /**
+     * A task read from a shard, with its key and shard name.
+     */
+    private static final class Placed {
+        private final long key;
+        private final String shard;
+        private final Task task;
+
+        Placed(long key, String shard, Task task) {
+            this.key = key;
+            this.shard = shard;
+            this.task = task;
+        }
+    }
+}
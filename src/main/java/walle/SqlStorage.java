@@ -0,0 +1,489 @@
+package walle;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Stores tasks in an embedded SQL database reached through JDBC (H2 by default, e.g.
+ * {@code jdbc:h2:file:data/walle}). Every mutation is a single-row statement, a full save
+ * writes only the rows that changed, and the table is indexed on type, done status and dates.
+ *
+ * List order is kept in a {@code seq} column holding {@link SequenceKeys}, which are
+ * mirrored in memory to turn task numbers into row keys. The highest task ID ever stored
+ * is kept in the one-row {@code task_ids} table, updated before a delete could lose it.
+ */
+public class SqlStorage implements Storage {
+
+    static final String URL_PREFIX = "jdbc:";
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS tasks ("
+                + "seq BIGINT PRIMARY KEY, "
+                + "id INT NOT NULL DEFAULT 0, "
+                + "type CHAR(1) NOT NULL, "
+                + "done BOOLEAN NOT NULL, "
+                + "description VARCHAR NOT NULL, "
+                + "due_at TIMESTAMP, "
+                + "from_at TIMESTAMP, "
+                + "to_at TIMESTAMP)",
+        "ALTER TABLE tasks ADD COLUMN IF NOT EXISTS id INT NOT NULL DEFAULT 0",
+        "CREATE INDEX IF NOT EXISTS idx_tasks_id ON tasks(id)",
+        "CREATE INDEX IF NOT EXISTS idx_tasks_type ON tasks(type)",
+        "CREATE INDEX IF NOT EXISTS idx_tasks_done ON tasks(done)",
+        "CREATE INDEX IF NOT EXISTS idx_tasks_due ON tasks(due_at)",
+        "CREATE INDEX IF NOT EXISTS idx_tasks_from_to ON tasks(from_at, to_at)",
+        "CREATE TABLE IF NOT EXISTS task_ids (high_water INT NOT NULL)",
+    };
+    private static final String SELECT_SQL =
+            "SELECT seq, type, done, description, due_at, from_at, to_at, id FROM tasks";
+    private static final String UPDATE_SQL =
+            "UPDATE tasks SET type = ?, done = ?, description = ?, due_at = ?, from_at = ?, to_at = ? WHERE seq = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO tasks (seq, type, done, description, due_at, from_at, to_at, id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Rows read per query by load() and save()
+    static final int LOAD_PAGE_SIZE = 10_000;
+
+    private final String url;
+    private final SequenceKeys seqs = new SequenceKeys();
+    private Connection connection;
+    // Depth of nested beginBatch() calls; the outermost one holds a transaction open
+    private int batchDepth = 0;
+    // Highest task ID seen, and the value in the task_ids table
+    private int idHighWater = 0;
+    private int storedIdHighWater = 0;
+
+    /**
+     * Creates a storage handler for the database at the given JDBC URL.
+     * The connection is opened on first use.
+     *
+     * @param url JDBC URL of the database.
+     */
+    public SqlStorage(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public ArrayList<Task> load() throws WalleException {
+        ArrayList<Task> tasks = new ArrayList<>();
+        seqs.clear();
+        try {
+            try (Statement st = connection().createStatement();
+                 ResultSet rs = st.executeQuery("SELECT high_water FROM task_ids")) {
+                storedIdHighWater = rs.next() ? rs.getInt(1) : 0;
+            }
+            idHighWater = storedIdHighWater;
+            scanRows(rs -> {
+                seqs.addLoaded(rs.getLong(1));
+                Task t = readTask(rs);
+                noteId(t.getId());
+                tasks.add(t);
+            });
+            return tasks;
+
+        } catch (SQLException e) {
+            throw new WalleException("Warning: task database is unreadable. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the stored rows with the given tasks, writing only the difference. Rows are
+     * matched to tasks by task ID, so deleting or inserting a task leaves every other row
+     * where it is: a matched row is updated in place only if the task changed, rows without
+     * a task are deleted, and tasks without a row are inserted with keys between those of
+     * their neighbours. A matched row that is out of list order is replaced instead. Only
+     * if a run of new tasks does not fit between its neighbours' keys is the table rewritten.
+     *
+     * @param tasks The tasks to be saved.
+     * @throws WalleException If the tasks cannot be written.
+     */
+    @Override
+    public int getIdHighWater() {
+        return idHighWater;
+    }
+
+    @Override
+    public void save(List<Task> tasks) throws WalleException {
+        HashMap<Integer, Task> byId = new HashMap<>();
+        for (Task t : tasks) {
+            if (t.getId() > 0) {
+                byId.put(t.getId(), t);
+            }
+            noteId(t.getId());
+        }
+
+        try {
+            Connection c = connection();
+            boolean isOwnTransaction = batchDepth == 0;
+            c.setAutoCommit(false);
+            try (PreparedStatement update = c.prepareStatement(UPDATE_SQL);
+                 PreparedStatement insert = c.prepareStatement(INSERT_SQL);
+                 PreparedStatement delete = c.prepareStatement("DELETE FROM tasks WHERE seq = ?")) {
+                HashMap<Integer, Long> rowSeqs = new HashMap<>();
+                HashSet<Integer> changedIds = new HashSet<>();
+                scanRows(rs -> {
+                    long seq = rs.getLong(1);
+                    int id = rs.getInt(8);
+                    Task t = byId.get(id);
+                    if (t == null || rowSeqs.containsKey(id)) {
+                        delete.setLong(1, seq);
+                        delete.addBatch();
+                        return;
+                    }
+                    rowSeqs.put(id, seq);
+                    if (!matches(rs, t)) {
+                        changedIds.add(id);
+                    }
+                });
+
+                long[] keys = new long[tasks.size()];
+                long lastKept = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    Long seq = rowSeqs.get(tasks.get(i).getId());
+                    if (seq != null && seq > lastKept) {
+                        keys[i] = seq;
+                        lastKept = seq;
+                    } else if (seq != null) {
+                        delete.setLong(1, seq);
+                        delete.addBatch();
+                    }
+                }
+
+                storeIdHighWater();
+                if (SequenceKeys.fillGaps(keys)) {
+                    for (int i = 0; i < keys.length; i++) {
+                        Task t = tasks.get(i);
+                        if (!rowSeqs.containsKey(t.getId()) || rowSeqs.get(t.getId()) != keys[i]) {
+                            bindTask(insert, keys[i], t);
+                            insert.addBatch();
+                        } else if (changedIds.contains(t.getId())) {
+                            bindFields(update, 1, t);
+                            update.setLong(7, keys[i]);
+                            update.addBatch();
+                        }
+                    }
+                    delete.executeBatch();
+                } else {
+                    try (Statement st = c.createStatement()) {
+                        st.executeUpdate("DELETE FROM tasks");
+                    }
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = (i + 1) * SequenceKeys.GAP;
+                        bindTask(insert, keys[i], tasks.get(i));
+                        insert.addBatch();
+                    }
+                }
+                update.executeBatch();
+                insert.executeBatch();
+                if (isOwnTransaction) {
+                    c.commit();
+                }
+                seqs.clear();
+                for (long key : keys) {
+                    seqs.addLoaded(key);
+                }
+            } catch (SQLException | WalleException e) {
+                c.rollback();
+                load();
+                throw e;
+            } finally {
+                c.setAutoCommit(isOwnTransaction);
+            }
+
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads every row in list order, {@link #LOAD_PAGE_SIZE} rows per query, so the driver
+     * never buffers the whole table at once.
+     */
+    private void scanRows(RowHandler handler) throws SQLException, WalleException {
+        try (PreparedStatement ps = connection().prepareStatement(
+                SELECT_SQL + " WHERE seq > ? ORDER BY seq LIMIT " + LOAD_PAGE_SIZE)) {
+            long lastSeq = Long.MIN_VALUE;
+            int rows;
+            do {
+                rows = 0;
+                ps.setLong(1, lastSeq);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lastSeq = rs.getLong(1);
+                        handler.accept(rs);
+                        rows++;
+                    }
+                }
+            } while (rows == LOAD_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Handles one row of {@link #SELECT_SQL}.
+     */
+    private interface RowHandler {
+        void accept(ResultSet rs) throws SQLException, WalleException;
+    }
+
+    @Override
+    public void appendAdd(Task t) throws WalleException {
+        noteId(t.getId());
+        insert(seqs.append(), t);
+    }
+
+    @Override
+    public void appendInsert(int idx1Based, Task t) throws WalleException {
+        noteId(t.getId());
+        long seq = seqs.insert(idx1Based);
+        if (seq < 0) {
+            renumber();
+            seq = seqs.insert(idx1Based);
+        }
+        insert(seq, t);
+    }
+
+    @Override
+    public void appendDelete(int idx1Based) throws WalleException {
+        try {
+            storeIdHighWater();
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+        update("DELETE FROM tasks WHERE seq = ?", seqs.get(idx1Based));
+        seqs.remove(idx1Based);
+    }
+
+    @Override
+    public void appendMark(int idx1Based) throws WalleException {
+        update("UPDATE tasks SET done = TRUE WHERE seq = ?", seqs.get(idx1Based));
+    }
+
+    @Override
+    public void appendUnmark(int idx1Based) throws WalleException {
+        update("UPDATE tasks SET done = FALSE WHERE seq = ?", seqs.get(idx1Based));
+    }
+
+    /**
+     * Starts a batch: the changes recorded until it ends share one transaction.
+     *
+     * @throws WalleException If the transaction cannot be started.
+     */
+    @Override
+    public void beginBatch() throws WalleException {
+        try {
+            if (batchDepth == 0) {
+                connection().setAutoCommit(false);
+            }
+            batchDepth++;
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ends a batch; the outermost one commits its transaction.
+     *
+     * @throws WalleException If the transaction cannot be committed.
+     */
+    @Override
+    public void endBatch() throws WalleException {
+        assert batchDepth > 0 : "endBatch without beginBatch";
+        batchDepth--;
+        if (batchDepth > 0) {
+            return;
+        }
+        try {
+            Connection c = connection();
+            try {
+                c.commit();
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws WalleException {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't close the task database: " + e.getMessage());
+        } finally {
+            connection = null;
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = DriverManager.getConnection(url);
+            try (Statement st = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    st.execute(ddl);
+                }
+                try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM task_ids")) {
+                    if (rs.next() && rs.getInt(1) == 0) {
+                        st.executeUpdate("INSERT INTO task_ids (high_water) VALUES (0)");
+                    }
+                }
+            }
+        }
+        return connection;
+    }
+
+    // IDs out of range are replaced when the tasks are loaded, so they do not count
+    private void noteId(int id) {
+        if (id <= TaskList.MAX_ID) {
+            idHighWater = Math.max(idHighWater, id);
+        }
+    }
+
+    // Records the highest ID seen before a row holding it may be deleted
+    private void storeIdHighWater() throws SQLException {
+        if (idHighWater <= storedIdHighWater) {
+            return;
+        }
+        try (PreparedStatement ps = connection().prepareStatement("UPDATE task_ids SET high_water = ?")) {
+            ps.setInt(1, idHighWater);
+            ps.executeUpdate();
+        }
+        storedIdHighWater = idHighWater;
+    }
+
+    private void insert(long seq, Task t) throws WalleException {
+        try (PreparedStatement ps = connection().prepareStatement(INSERT_SQL)) {
+            bindTask(ps, seq, t);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    private void update(String sql, long seq) throws WalleException {
+        try (PreparedStatement ps = connection().prepareStatement(sql)) {
+            ps.setLong(1, seq);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Spreads the sequence numbers out again once no gap is left between two neighbours.
+     * Rows are moved to negative keys first so that the primary key never collides.
+     */
+    private void renumber() throws WalleException {
+        try {
+            Connection c = connection();
+            boolean isOwnTransaction = batchDepth == 0;
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement();
+                 PreparedStatement ps = c.prepareStatement("UPDATE tasks SET seq = ? WHERE seq = ?")) {
+                st.executeUpdate("UPDATE tasks SET seq = -seq");
+                long[] old = seqs.renumber();
+                for (int i = 0; i < old.length; i++) {
+                    ps.setLong(1, seqs.get(i + 1));
+                    ps.setLong(2, -old[i]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                if (isOwnTransaction) {
+                    c.commit();
+                }
+            } catch (SQLException e) {
+                c.rollback();
+                load();
+                throw e;
+            } finally {
+                c.setAutoCommit(isOwnTransaction);
+            }
+
+        } catch (SQLException e) {
+            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
+        }
+    }
+
+    private static void bindTask(PreparedStatement ps, long seq, Task t) throws SQLException {
+        ps.setLong(1, seq);
+        bindFields(ps, 2, t);
+        ps.setInt(8, t.getId());
+    }
+
+    // Binds type, done, description, due_at, from_at and to_at, starting at the given parameter
+    private static void bindFields(PreparedStatement ps, int first, Task t) throws SQLException {
+        ps.setString(first, typeCode(t));
+        ps.setBoolean(first + 1, t.isDone());
+        ps.setString(first + 2, t.getDescription());
+        ps.setNull(first + 3, Types.TIMESTAMP);
+        ps.setNull(first + 4, Types.TIMESTAMP);
+        ps.setNull(first + 5, Types.TIMESTAMP);
+        if (t instanceof Deadline) {
+            ps.setObject(first + 3, ((Deadline) t).getBy());
+        } else if (t instanceof Event) {
+            Event e = (Event) t;
+            ps.setObject(first + 4, e.getFrom());
+            ps.setObject(first + 5, e.getTo());
+        }
+    }
+
+    // Whether the row read by SELECT_SQL already holds the given task
+    private static boolean matches(ResultSet rs, Task t) throws SQLException {
+        LocalDateTime due = t instanceof Deadline ? ((Deadline) t).getBy() : null;
+        LocalDateTime from = t instanceof Event ? ((Event) t).getFrom() : null;
+        LocalDateTime to = t instanceof Event ? ((Event) t).getTo() : null;
+        return typeCode(t).equals(rs.getString(2))
+                && t.isDone() == rs.getBoolean(3)
+                && t.getDescription().equals(rs.getString(4))
+                && Objects.equals(due, rs.getObject(5, LocalDateTime.class))
+                && Objects.equals(from, rs.getObject(6, LocalDateTime.class))
+                && Objects.equals(to, rs.getObject(7, LocalDateTime.class));
+    }
+
+    private static String typeCode(Task t) {
+        return t instanceof Deadline ? "D" : t instanceof Event ? "E" : "T";
+    }
+
+    private static Task readTask(ResultSet rs) throws SQLException, WalleException {
+        String type = rs.getString(2);
+        String desc = rs.getString(4);
+
+        Task t;
+        switch (type) {
+        case "T":
+            t = new Todo(desc);
+            break;
+        case "D":
+            t = new Deadline(desc, rs.getObject(5, LocalDateTime.class));
+            break;
+        case "E":
+            t = new Event(desc, rs.getObject(6, LocalDateTime.class), rs.getObject(7, LocalDateTime.class));
+            break;
+        default:
+            throw new WalleException("Unknown task type in task database: " + type);
+        }
+
+        if (rs.getBoolean(3)) {
+            t.markDone();
+        }
+        if (rs.getInt(8) > 0) {
+            t.assignId(rs.getInt(8));
+        }
+        return t;
+    }
+}
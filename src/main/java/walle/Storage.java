@@ -1,180 +1,175 @@
 package walle;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 
-
-
 /**
- * Handles loading tasks from disk and saving tasks to disk.
- * Responsible for persistence of the task list.
+ * Persists the task list.
+ * Implementations receive the full list on {@link #save(List)} and one call per mutation
+ * in between, so each backend can choose how cheaply it records a single change.
+ * Task numbers passed to the mutation methods are 1-based, as in {@link TaskList}.
  */
-public class Storage {
+public interface Storage {
 
-    private static final DateTimeFormatter SAVE_DATE_TIME_FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
-    private final Path savePath;
+    /**
+     * Opens the storage backend for the given location: a JDBC URL (e.g.
+     * {@code jdbc:h2:file:data/walle}) opens an embedded SQL database, {@code mem:} opens
+     * an in-memory store, {@code shards:<directory>} opens month-sharded files and anything
+     * else is treated as the path of a save file, loaded in parallel and journaled with
+     * write-behind. A save file whose name ends in {@code .bin} is written in the binary
+     * format, any other in the text format.
+     *
+     * @param location Where the tasks are kept.
+     * @return The storage backend for that location.
+     */
+    static Storage open(String location) {
+        if (location.startsWith(SqlStorage.URL_PREFIX)) {
+            return new SqlStorage(location);
+        }
+        if (location.equals(InMemoryStorage.LOCATION)) {
+            return new InMemoryStorage();
+        }
+        if (location.startsWith(ShardedStorage.LOCATION_PREFIX)) {
+            return new ShardedStorage(location.substring(ShardedStorage.LOCATION_PREFIX.length()));
+        }
+        SaveFormat format = location.endsWith(FileStorage.BINARY_SUFFIX) ? SaveFormat.BINARY : SaveFormat.TEXT;
+        FileStorage fileStorage = new FileStorage(location, format);
+        fileStorage.setParallelLoad(true);
+        fileStorage.setWriteBehind(FileStorage.DEFAULT_WRITE_BEHIND_DELAY_MILLIS, FsyncPolicy.ALWAYS);
+        return fileStorage;
+    }
 
+    /**
+     * Loads all stored tasks in list order.
+     *
+     * @return The stored tasks.
+     * @throws WalleException If the tasks cannot be read or are corrupted.
+     */
+    ArrayList<Task> load() throws WalleException;
 
     /**
-     * Creates a storage handler that reads from and writes to the specified file path.
-     * @param filePath Path to the save file.
+     * Returns the highest task ID this backend has ever stored, including IDs of tasks that
+     * were deleted since. New tasks get IDs above it, so no ID is ever handed out twice.
+     * Meaningful once {@link #load()} has run; backends that do not track it return 0.
+     *
+     * @return Highest task ID stored so far, or 0 if unknown.
      */
-    public Storage(String filePath) {
-        this.savePath = Paths.get(filePath);
+    default int getIdHighWater() {
+        return 0;
     }
 
     /**
-     * Loads tasks from the save file.
+     * Replaces everything stored with the given tasks.
      *
-     * @return A task list containing tasks read from storage.
-     * @throws WalleException If the file cannot be read or data format is invalid.
+     * @param tasks The tasks to be saved.
+     * @throws WalleException If the tasks cannot be written.
      */
-    public ArrayList<Task> load() throws WalleException {
-        ArrayList<Task> tasks = new ArrayList<>();
+    void save(List<Task> tasks) throws WalleException;
 
-        if (!Files.exists(savePath)) {
-            return tasks;
-        }
+    /**
+     * Records a task added to the end of the list.
+     *
+     * @param t The task that was added.
+     * @throws WalleException If the change cannot be written.
+     */
+    void appendAdd(Task t) throws WalleException;
 
-        try {
-            List<String> lines = Files.readAllLines(savePath);
-            for (String line : lines) {
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
-                tasks.add(parseSavedLine(line));
-            }
-            return tasks;
-
-        } catch (IOException e) {
-            throw new WalleException("Warning: save file is unreadable. " + e.getMessage());
-        }
-    }
+    /**
+     * Records a task inserted at the given 1-based index.
+     *
+     * @param idx1Based 1-based index at which the task was inserted.
+     * @param t The task that was inserted.
+     * @throws WalleException If the change cannot be written.
+     */
+    void appendInsert(int idx1Based, Task t) throws WalleException;
 
     /**
-     * Saves tasks to the save file, overwriting existing content.
+     * Records the deletion of the task at the given 1-based index.
      *
-     * @param tasks The tasks to be saved.
-     * @throws WalleException If the file cannot be written.
-     */
-    public void save(ArrayList<Task> tasks) throws WalleException {
-        try {
-            if (savePath.getParent() != null) {
-                Files.createDirectories(savePath.getParent());
-            }
-
-            ArrayList<String> lines = new ArrayList<>();
-            for (Task t : tasks) {
-                lines.add(serializeTask(t));
-            }
-            Files.write(savePath, lines);
-
-        } catch (IOException e) {
-            throw new WalleException("Oops — couldn't save tasks: " + e.getMessage());
-        }
-    }
+     * @param idx1Based 1-based index of the deleted task.
+     * @throws WalleException If the change cannot be written.
+     */
+    void appendDelete(int idx1Based) throws WalleException;
 
     /**
-     * Serializes a task into a single line suitable for saving to a text file.
-     * The output format uses a leading task type (T/D/E), a done flag (1/0),
-     * and any required date/time fields.
+     * Records that the task at the given 1-based index was marked as done.
      *
-     * @param t Task to serialize.
-     * @return A single-line string representation of the task for storage.
+     * @param idx1Based 1-based index of the marked task.
+     * @throws WalleException If the change cannot be written.
      */
-    private String serializeTask(Task t) {
-        String doneBit = t.isDone() ? "1" : "0";
+    void appendMark(int idx1Based) throws WalleException;
 
-        if (t instanceof Todo) {
-            return "T | " + doneBit + " | " + t.getDescription();
-        }
-        if (t instanceof Deadline) {
-            Deadline d = (Deadline) t;
-            return "D | " + doneBit + " | " + d.getDescription()
-                    + " | " + d.getBy().format(SAVE_DATE_TIME_FMT);
-        }
-        if (t instanceof Event) {
-            Event event = (Event) t;
-            return "E | " + doneBit + " | " + event.getDescription()
-                    + " | " + event.getFrom().format(SAVE_DATE_TIME_FMT)
-                    + " | " + event.getTo().format(SAVE_DATE_TIME_FMT);
-        }
+    /**
+     * Records that the task at the given 1-based index was marked as not done.
+     *
+     * @param idx1Based 1-based index of the unmarked task.
+     * @throws WalleException If the change cannot be written.
+     */
+    void appendUnmark(int idx1Based) throws WalleException;
 
-        return "T | " + doneBit + " | " + t.getDescription();
+    /**
+     * Starts a group of changes that the backend may write together, e.g. in one journal
+     * append or one database transaction, instead of one write per change. Every call must
+     * be matched by {@link #endBatch()}; groups may nest.
+     *
+     * @throws WalleException If the group cannot be started.
+     */
+    default void beginBatch() throws WalleException {
     }
 
     /**
-     * Parses a saved task line from the storage file and reconstructs the corresponding {@link Task}.
-     * Expected formats:
-     * <ul>
-     *   <li>{@code T | 0/1 | <description>}</li>
-     *   <li>{@code D | 0/1 | <description> | <yyyy-MM-dd HHmm>}</li>
-     *   <li>{@code E | 0/1 | <description> | <start> | <end>}</li>
-     * </ul>
+     * Ends the group of changes started by {@link #beginBatch()}. Once the outermost group
+     * ends, its changes are written as they would have been one by one.
      *
-     * AI-assisted : Used ChatGPT to suggest validation checks and a parsing flow
-     * for corrupted or incomplete saved lines.
-     *
-     * @param line A single line read from the save file.
-     * @return The reconstructed task represented by the saved line.
-     * @throws WalleException If the line format is invalid, incomplete, or contains invalid date/time data.
+     * @throws WalleException If the grouped changes cannot be written.
      */
-    private static Task parseSavedLine(String line) throws WalleException {
-        String[] parts = line.split("\\s*\\|\\s*");
+    default void endBatch() throws WalleException {
+    }
 
-        if (parts.length < 3) {
-            throw new WalleException("Invalid save line: " + line);
-        }
+    /**
+     * Hands the backend the list it persists, for backends that write the list whole
+     * rather than change by change. Called once, after the stored tasks are loaded.
+     *
+     * @param tasks The live task list.
+     */
+    default void attach(TaskList tasks) {
+    }
 
-        String type = parts[0].trim();
-        boolean done = parts[1].trim().equals("1");
-        String desc = parts[2].trim();
-
-        Task t;
-        try {
-            switch (type) {
-            case "T":
-                t = new Todo(desc);
-                break;
-
-            case "D":
-                if (parts.length < 4) {
-                    throw new WalleException("Invalid deadline line: " + line);
-                }
-                LocalDateTime by = LocalDateTime.parse(parts[3].trim(), SAVE_DATE_TIME_FMT);
-                t = new Deadline(desc, by);
-                break;
-
-            case "E":
-                if (parts.length < 5) {
-                    throw new WalleException("Invalid event line: " + line);
-                }
-                LocalDateTime from = LocalDateTime.parse(parts[3].trim(), SAVE_DATE_TIME_FMT);
-                LocalDateTime to = LocalDateTime.parse(parts[4].trim(), SAVE_DATE_TIME_FMT);
-                t = new Event(desc, from, to);
-                break;
-
-            default:
-                throw new WalleException("Unknown task type in save file: " + type);
-            }
-        } catch (DateTimeParseException e) {
-            throw new WalleException("Invalid date/time in save line: " + line);
-        }
+    /**
+     * Returns whether the backend would like a fresh snapshot of the whole list.
+     *
+     * @return True if {@link #compactAsync(List)} should be called; false otherwise.
+     */
+    default boolean needsCompaction() {
+        return false;
+    }
 
-        if (done) {
-            t.markDone();
-        } else {
-            t.markUndone();
-        }
+    /**
+     * Starts folding recorded changes into a snapshot of the given tasks, if the backend
+     * keeps such a log.
+     *
+     * @param tasks Current tasks.
+     * @return True if a compaction was started; false otherwise.
+     * @throws WalleException If the compaction cannot be started.
+     */
+    default boolean compactAsync(List<Task> tasks) throws WalleException {
+        return false;
+    }
 
-        return t;
+    /**
+     * Makes every recorded change durable.
+     *
+     * @throws WalleException If pending changes cannot be written.
+     */
+    default void flush() throws WalleException {
     }
 
+    /**
+     * Flushes pending changes and releases any resources held by the backend.
+     *
+     * @throws WalleException If pending changes cannot be written.
+     */
+    default void close() throws WalleException {
+        flush();
+    }
 }
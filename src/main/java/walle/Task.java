@@ -10,6 +10,11 @@ public class Task {
     private final String description;
     // Used enum instead of boolean
     private Status status;
+    // Stable ID given by TaskList; 0 until the task is first added
+    private int id;
+    // What render() returned, and its lower-case form; cleared when the status changes
+    private String rendered;
+    private String lowerRendered;
 
     /**
      * Creates a task with the given description.
@@ -28,14 +33,20 @@ public class Task {
      */
 
     public void markDone() {
-        status = Status.DONE;
+        if (status != Status.DONE) {
+            status = Status.DONE;
+            clearRendering();
+        }
     }
 
     /**
      * Marks this task as not done.
      */
     public void markUndone() {
-        status = Status.NOT_DONE;
+        if (status != Status.NOT_DONE) {
+            status = Status.NOT_DONE;
+            clearRendering();
+        }
     }
 
     /**
@@ -50,20 +61,92 @@ public class Task {
 
     /**
      * Returns a user-friendly string representation of this task.
+     * It is built by {@link #render()} once and reused until the status changes.
      *
      * @return Formatted task string.
      */
-
     @Override
-    public String toString() {
+    public final String toString() {
+        if (rendered == null) {
+            rendered = render();
+        }
+        return rendered;
+    }
+
+    /**
+     * Returns {@link #toString()} in lower case, cached the same way, for case-insensitive
+     * searches.
+     *
+     * @return Lower-case task string.
+     */
+    public String toLowerCaseString() {
+        if (lowerRendered == null) {
+            lowerRendered = toString().toLowerCase();
+        }
+        return lowerRendered;
+    }
+
+    /**
+     * Formats this task for display. Subclasses add their type and dates.
+     *
+     * @return Formatted task string.
+     */
+    protected String render() {
         String box = (status == Status.DONE) ? "[X] " : "[ ] ";
         return box + description;
     }
 
+    private void clearRendering() {
+        rendered = null;
+        lowerRendered = null;
+    }
+
     public String getDescription() {
         return description; // change if your field name differs
     }
 
+    /**
+     * Returns the stable ID of this task, or 0 if it has not been added to a task list yet.
+     *
+     * @return Task ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the ID as users type it, e.g. {@code #1f}.
+     *
+     * @return Formatted task ID.
+     */
+    public String getIdTag() {
+        return "#" + Integer.toHexString(id);
+    }
+
+    void assignId(int id) {
+        assert id > 0 : "task IDs should be positive";
+        this.id = id;
+    }
+
+    /**
+     * Returns a detached copy of this task, with the same status and ID.
+     * Subclasses override this to copy their own fields.
+     *
+     * @return The copy.
+     */
+    Task copy() {
+        return copyStateTo(new Task(description));
+    }
+
+    /**
+     * Gives the copy this task's status and ID.
+     */
+    Task copyStateTo(Task copy) {
+        copy.status = status;
+        copy.id = id;
+        return copy;
+    }
+
 
 
 }
@@ -1,26 +1,168 @@
 package walle;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 /**
  * Stores and manages the collection of tasks in memory.
  * Provides operations to add, remove, update, and search tasks.
+ * Every task gets a stable ID on its way in, which stays valid while other tasks move.
+ * Description words, display-string trigrams, event time ranges and due times are indexed
+ * as tasks come and go, so searches only look at likely matches.
  */
 public class TaskList {
-    private final ArrayList<Task> tasks = new ArrayList<>();
+
+    private static final DateTimeFormatter DAY_FMT = DateTimeFormatter.ofPattern("MMM dd yyyy");
+    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("MMM dd yyyy HH:mm");
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+    // Loaded IDs above this get a fresh ID, which keeps the ID bitmaps a reasonable size
+    static final int MAX_ID = 1 << 26;
+    // Below this many tasks, splitting a scan across threads costs more than it saves
+    static final int PARALLEL_SCAN_THRESHOLD = 1 << 15;
+    // Streamed output is handed over in pieces of about this many characters
+    private static final int STREAM_CHUNK = 8192;
+    private static final String EMPTY_LIST_MESSAGE = "(You have no task available now)";
+
+    /** Number of tasks on one page of {@code list page <n>}. */
+    public static final int PAGE_SIZE = 50;
+    private static final int TODO_SLOT = 0;
+    private static final int DEADLINE_SLOT = 1;
+    private static final int EVENT_SLOT = 2;
+
+    /**
+     * How the tasks are held in memory.
+     */
+    public enum Backing {
+        /** An array list: fastest to scan, but inserting or deleting near the top is O(n). */
+        ARRAY,
+        /** An order-statistic tree: O(log n) get, insert, delete and position of an ID. */
+        TREE,
+        /**
+         * Primitive columns instead of task objects, for lists of millions of tasks. Tasks
+         * are rebuilt on every read, and no optional indexes are kept, so searches scan.
+         */
+        COMPACT
+    }
+
+    private final List<Task> tasks;
+    private final CompactTaskArray compact;
+    // Null in compact mode, which holds no task objects
+    private final HashMap<Integer, Task> byId;
+    // 1-based position of each task by ID (0 if absent), with array backing only. Tasks that
+    // move are renumbered as the array shifts them, which costs no more than the shift itself.
+    private int[] positionById;
+    // Bitmaps over task IDs, and task counts by type, for status filters and O(1) counts
+    private final BitSet liveIds = new BitSet();
+    private final BitSet doneIds = new BitSet();
+    private final int[] typeCounts = new int[3];
+    private final int[] doneTypeCounts = new int[3];
+    private TokenIndex wordIndex;
+    private TrigramIndex substringIndex;
+    private final EventIntervalTree events;
+    private final DeadlineIndex deadlines;
+    private int nextId = 1;
+    private boolean hasReassignedIds = false;
+    // Counts changes to the list, so the rendered list can be reused until the next one
+    private long version;
+    private String displayCache;
+    private long displayCacheVersion = -1;
 
     /**
      * Creates an empty task list.
      */
-    public TaskList() {}
+    public TaskList() {
+        this(Backing.ARRAY);
+    }
+
+    /**
+     * Creates an empty task list with the given backing.
+     *
+     * @param backing How the tasks are held in memory.
+     */
+    public TaskList(Backing backing) {
+        if (backing == Backing.COMPACT) {
+            this.compact = new CompactTaskArray();
+            this.tasks = compact;
+            this.byId = null;
+            this.events = null;
+            this.deadlines = null;
+            return;
+        }
+        this.compact = null;
+        this.tasks = backing == Backing.TREE ? new TaskTree() : new ArrayList<>();
+        this.positionById = backing == Backing.ARRAY ? new int[16] : null;
+        this.byId = new HashMap<>();
+        this.wordIndex = new TokenIndex();
+        this.substringIndex = new TrigramIndex();
+        this.events = new EventIntervalTree();
+        this.deadlines = new DeadlineIndex();
+    }
 
     /**
      * Creates a task list initialized with tasks loaded from storage.
      *
      * @param loaded
      */
-    public TaskList(ArrayList<Task> loaded) {
+    public TaskList(List<Task> loaded) {
+        this(loaded, Backing.ARRAY);
+    }
+
+    /**
+     * Creates a task list with the given backing, initialized with tasks loaded from storage.
+     *
+     * @param loaded Tasks loaded from storage.
+     * @param backing How the tasks are held in memory.
+     */
+    public TaskList(List<Task> loaded, Backing backing) {
+        this(loaded, backing, 0);
+    }
+
+    /**
+     * Creates a task list with the given backing, initialized with tasks loaded from storage.
+     * New IDs start above the given high-water mark, so IDs of tasks deleted before the
+     * tasks were saved are not handed out again.
+     *
+     * @param loaded Tasks loaded from storage.
+     * @param backing How the tasks are held in memory.
+     * @param idHighWater Highest ID the storage has ever held (see {@link Storage#getIdHighWater()}).
+     */
+    public TaskList(List<Task> loaded, Backing backing, int idHighWater) {
+        this(backing);
+        if (idHighWater > 0 && idHighWater < MAX_ID) {
+            nextId = idHighWater + 1;
+        }
+        for (Task t : loaded) {
+            int storedId = t.getId();
+            register(t);
+            hasReassignedIds |= t.getId() != storedId;
+        }
         tasks.addAll(loaded);
+        trackPositions(0);
+    }
+
+    /**
+     * Returns whether loading gave any task a new ID because it had none, or had one that
+     * was taken or out of range. The new IDs should then be saved back to storage.
+     *
+     * @return True if any loaded task was given a new ID; false otherwise.
+     */
+    public boolean hasReassignedIds() {
+        return hasReassignedIds;
     }
 
     /**
@@ -33,12 +175,22 @@ public class TaskList {
     }
 
     /**
-     * Returns the underlying list of tasks.
+     * Returns the number of changes made to the list so far. Tasks must be changed through
+     * this list, e.g. {@link #mark(int)}, for the count and the cached rendering to follow.
+     *
+     * @return List version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a read-only view of the tasks, which reflects later changes to the list.
      *
-     * @return Backing task list.
+     * @return Read-only view of the tasks.
      */
-    public ArrayList<Task> getTasks() {
-        return tasks;
+    public List<Task> getTasks() {
+        return Collections.unmodifiableList(tasks);
     }
 
 
@@ -49,7 +201,10 @@ public class TaskList {
      */
     public void add(Task t) {
         assert t != null : "cannot add null task";
+        register(t);
         tasks.add(t);
+        trackPositions(tasks.size() - 1);
+        version++;
     }
 
     /**
@@ -61,7 +216,10 @@ public class TaskList {
         assert desc != null : "todo description should not be null";
         assert !desc.isBlank() : "todo description should not be blank";
         Task t = new Todo(desc);
+        register(t);
         tasks.add(t);
+        trackPositions(tasks.size() - 1);
+        version++;
         return t;
     }
 
@@ -74,7 +232,109 @@ public class TaskList {
      */
     public Task delete(int idx1Based) {
         assert idx1Based >= 1 && idx1Based <= tasks.size() : "delete index out of bounds";
-        return tasks.remove(idx1Based - 1);
+        Task removed = tasks.remove(idx1Based - 1);
+        version++;
+        unregister(removed);
+        trackPositions(idx1Based - 1);
+        if (substringIndex != null && substringIndex.needsRebuild()) {
+            substringIndex.rebuild(tasks);
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes the tasks at the given 1-based indexes in one pass over the list, rather than
+     * shifting the tasks after each one separately.
+     *
+     * @param idx1Based 1-based indexes of the tasks to delete, in increasing order.
+     * @return The deleted tasks, in list order.
+     */
+    public List<Task> deleteAll(int[] idx1Based) {
+        assert isIncreasing(idx1Based) : "indexes must be increasing";
+        assert idx1Based.length == 0 || idx1Based[0] >= 1 && idx1Based[idx1Based.length - 1] <= tasks.size()
+                : "delete index out of bounds";
+        if (idx1Based.length == 0) {
+            return new ArrayList<>();
+        }
+        List<Task> removed;
+        if (tasks instanceof TaskTree) {
+            // O(log n) each; going backwards keeps the remaining indexes valid
+            Task[] byPos = new Task[idx1Based.length];
+            for (int i = idx1Based.length - 1; i >= 0; i--) {
+                byPos[i] = tasks.remove(idx1Based[i] - 1);
+            }
+            removed = Arrays.asList(byPos);
+        } else if (compact != null) {
+            removed = compact.removeAt(toPositions(idx1Based));
+        } else {
+            // Slides the kept tasks down over the gaps, then cuts off the tail
+            removed = new ArrayList<>(idx1Based.length);
+            int next = 0;
+            int write = idx1Based[0] - 1;
+            for (int read = write; read < tasks.size(); read++) {
+                Task t = tasks.get(read);
+                if (next < idx1Based.length && idx1Based[next] == read + 1) {
+                    removed.add(t);
+                    next++;
+                } else {
+                    tasks.set(write++, t);
+                }
+            }
+            tasks.subList(write, tasks.size()).clear();
+        }
+        version++;
+        for (Task t : removed) {
+            unregister(t);
+        }
+        trackPositions(idx1Based[0] - 1);
+        if (substringIndex != null && substringIndex.needsRebuild()) {
+            substringIndex.rebuild(tasks);
+        }
+        return removed;
+    }
+
+    // Drops a task that has left the list from the ID bitmaps, the counters and the indexes.
+    private void unregister(Task removed) {
+        if (byId != null) {
+            byId.remove(removed.getId());
+        }
+        if (positionById != null) {
+            positionById[removed.getId()] = 0;
+        }
+        liveIds.clear(removed.getId());
+        doneIds.clear(removed.getId());
+        typeCounts[typeSlot(removed)]--;
+        if (removed.isDone()) {
+            doneTypeCounts[typeSlot(removed)]--;
+        }
+        if (wordIndex != null) {
+            wordIndex.remove(removed);
+        }
+        if (substringIndex != null) {
+            substringIndex.remove(removed);
+        }
+        if (events != null && removed instanceof Event) {
+            events.remove((Event) removed);
+        } else if (deadlines != null && removed instanceof Deadline) {
+            deadlines.remove((Deadline) removed);
+        }
+    }
+
+    private static boolean isIncreasing(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] <= values[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] toPositions(int[] idx1Based) {
+        int[] positions = new int[idx1Based.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = idx1Based[i] - 1;
+        }
+        return positions;
     }
 
     /**
@@ -86,9 +346,7 @@ public class TaskList {
      */
     public Task mark(int idx1Based) {
         assert idx1Based >= 1 && idx1Based <= tasks.size() : "mark index out of bounds";
-        Task t = tasks.get(idx1Based - 1);
-        t.markDone();
-        return t;
+        return updateStatus(idx1Based, true);
     }
 
     /**
@@ -100,11 +358,162 @@ public class TaskList {
      */
     public Task unmark(int idx1Based) {
         assert idx1Based >= 1 && idx1Based <= tasks.size() : "unmark index out of bounds";
+        return updateStatus(idx1Based, false);
+    }
+
+    /**
+     * Marks or unmarks the tasks at the given 1-based indexes.
+     *
+     * @param idx1Based 1-based indexes of the tasks, in increasing order.
+     * @param isDone True to mark the tasks as done, false to mark them as not done.
+     * @return The tasks whose status changed, in list order.
+     */
+    public List<Task> setDone(int[] idx1Based, boolean isDone) {
+        assert isIncreasing(idx1Based) : "indexes must be increasing";
+        List<Task> changed = new ArrayList<>();
+        for (int idx : idx1Based) {
+            assert idx >= 1 && idx <= tasks.size() : "mark index out of bounds";
+            long before = version;
+            Task t = updateStatus(idx, isDone);
+            if (version != before) {
+                changed.add(t);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the 1-based indexes of the tasks with the given status.
+     *
+     * @param isDone Status to keep, or null for every task.
+     * @return The indexes, in increasing order.
+     */
+    public int[] positionsWithStatus(Boolean isDone) {
+        if (isDone == null) {
+            return IntStream.rangeClosed(1, tasks.size()).toArray();
+        }
+        int count = isDone ? countDone() : size() - countDone();
+        int[] positions = new int[count];
+        int n = 0;
+        if (compact != null) {
+            for (int i = compact.nextWithStatus(0, isDone); i >= 0; i = compact.nextWithStatus(i + 1, isDone)) {
+                positions[n++] = i + 1;
+            }
+        } else {
+            int idx = 0;
+            for (Task t : tasks) {
+                idx++;
+                if (t.isDone() == isDone) {
+                    positions[n++] = idx;
+                }
+            }
+        }
+        assert n == count : "status counters out of step with the tasks";
+        return positions;
+    }
+
+    // Sets the status of one task, re-filing it only if the status actually changes
+    private Task updateStatus(int idx1Based, boolean isDone) {
         Task t = tasks.get(idx1Based - 1);
-        t.markUndone();
+        if (t.isDone() != isDone) {
+            String oldText = substringIndex != null ? TrigramIndex.searchText(t) : null;
+            if (isDone) {
+                t.markDone();
+            } else {
+                t.markUndone();
+            }
+            tasks.set(idx1Based - 1, t);
+            reindexStatus(t, oldText);
+        }
         return t;
     }
 
+    // Re-files a task whose status changed; oldText is null when there is no trigram index
+    private void reindexStatus(Task t, String oldText) {
+        version++;
+        doneIds.set(t.getId(), t.isDone());
+        doneTypeCounts[typeSlot(t)] += t.isDone() ? 1 : -1;
+        if (oldText != null) {
+            substringIndex.update(t, oldText);
+            if (substringIndex.needsRebuild()) {
+                substringIndex.rebuild(tasks);
+            }
+        }
+        if (deadlines != null && t instanceof Deadline) {
+            deadlines.statusChanged((Deadline) t);
+        }
+    }
+
+    /**
+     * Returns the number of tasks marked as done, without looking at any task.
+     *
+     * @return Number of done tasks.
+     */
+    public int countDone() {
+        return doneTypeCounts[TODO_SLOT] + doneTypeCounts[DEADLINE_SLOT] + doneTypeCounts[EVENT_SLOT];
+    }
+
+    /**
+     * Returns a summary of how many tasks there are, by status and by type.
+     *
+     * @return Display string of the task counts.
+     */
+    public String toCountString() {
+        int done = countDone();
+        return "You have " + size() + " tasks: " + done + " done, " + (size() - done) + " pending.\n"
+                + countLine("Todos", TODO_SLOT) + "\n"
+                + countLine("Deadlines", DEADLINE_SLOT) + "\n"
+                + countLine("Events", EVENT_SLOT);
+    }
+
+    private String countLine(String label, int slot) {
+        return label + ": " + typeCounts[slot] + " (" + doneTypeCounts[slot] + " done)";
+    }
+
+    /**
+     * Returns the done or the pending tasks for display, with their list numbers.
+     * With tree backing only the matching tasks are visited, found through the status
+     * bitmap; compact lists step through their own done bits; array lists are scanned.
+     *
+     * @param isDone True for done tasks, false for pending ones.
+     * @return Display string of the tasks with that status.
+     */
+    public String statusToDisplayString(boolean isDone) {
+        String label = isDone ? "done" : "pending";
+        int count = isDone ? countDone() : size() - countDone();
+        if (count == 0) {
+            return "(You have no " + label + " tasks)";
+        }
+
+        StringBuilder sb = new StringBuilder("These are your " + label + " tasks:\n");
+        if (tasks instanceof TaskTree) {
+            BitSet ids = doneIds;
+            if (!isDone) {
+                ids = (BitSet) liveIds.clone();
+                ids.andNot(doneIds);
+            }
+            List<Task> hits = new ArrayList<>(count);
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                hits.add(byId.get(id));
+            }
+            appendInListOrder(sb, hits);
+        } else if (compact != null) {
+            for (int i = compact.nextWithStatus(0, isDone); i >= 0; i = compact.nextWithStatus(i + 1, isDone)) {
+                appendLine(sb, i + 1, compact.get(i));
+            }
+        } else {
+            appendMatches(sb, tasks, t -> t.isDone() == isDone);
+        }
+        return sb.toString().trim();
+    }
+
+    private static int typeSlot(Task t) {
+        if (t instanceof Deadline) {
+            return DEADLINE_SLOT;
+        }
+        return t instanceof Event ? EVENT_SLOT : TODO_SLOT;
+    }
+
     /**
      * Returns whether the task list is empty.
      *
@@ -121,18 +530,114 @@ public class TaskList {
      */
 
     public String toDisplayString() {
+        if (displayCacheVersion != version) {
+            displayCache = toDisplayString(tasks);
+            displayCacheVersion = version;
+        }
+        return displayCache;
+    }
+
+    /**
+     * Renders the given tasks as {@link #toDisplayString()} does, numbered from 1.
+     */
+    static String toDisplayString(List<Task> tasks) {
+        StringBuilder sb = new StringBuilder(64 * tasks.size() + 32);
+        try {
+            writeDisplayTo(tasks, sb);
+        } catch (IOException e) {
+            throw new AssertionError("a StringBuilder does not throw", e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the same text as {@link #toDisplayString()} to the given output a few thousand
+     * characters at a time, so that printing a very large list never holds all of it in memory.
+     *
+     * @param out Where the text goes.
+     * @throws IOException If writing to the output fails.
+     */
+    public void writeDisplayTo(Appendable out) throws IOException {
+        writeDisplayTo(tasks, out);
+    }
+
+    /**
+     * Writes the given tasks as {@link #writeDisplayTo(Appendable)} does, numbered from 1.
+     */
+    static void writeDisplayTo(List<Task> tasks, Appendable out) throws IOException {
         if (tasks.isEmpty()) {
-            return "(You have no task available now)";
+            out.append(EMPTY_LIST_MESSAGE);
+            return;
         }
-        StringBuilder sb = new StringBuilder("These are all your tasks:\n");
-        for (int i = 0; i < tasks.size(); i++) {
-            sb.append(i + 1).append(". ").append(tasks.get(i)).append("\n");
+        out.append("These are all your tasks:");
+        writeLines(tasks, 0, tasks.size(), out);
+    }
+
+    /**
+     * Returns one page of the tasks for display, with their list numbers.
+     *
+     * @param offset Number of tasks to skip, from the start of the list.
+     * @param limit Maximum number of tasks shown.
+     * @return Display string of the tasks on the page.
+     */
+    public String pageToDisplayString(int offset, int limit) {
+        return pageToDisplayString(tasks, offset, limit);
+    }
+
+    /**
+     * Renders one page of the given tasks as {@link #pageToDisplayString(int, int)} does.
+     */
+    static String pageToDisplayString(List<Task> tasks, int offset, int limit) {
+        assert offset >= 0 && limit > 0 : "offset must not be negative and limit must be positive";
+        int size = tasks.size();
+        if (size == 0) {
+            return EMPTY_LIST_MESSAGE;
         }
-        return sb.toString().trim();
+        if (offset >= size) {
+            return "(There are only " + size + " tasks, so that page is empty)";
+        }
+        int end = (int) Math.min((long) offset + limit, size);
+        StringBuilder sb = new StringBuilder("These are your tasks " + (offset + 1) + "-" + end + " of " + size + ":");
+        try {
+            writeLines(tasks, offset, end, sb);
+        } catch (IOException e) {
+            throw new AssertionError("a StringBuilder does not throw", e);
+        }
+        return sb.toString();
+    }
+
+    // Writes the tasks in [from, to), each on a new line, buffering unless out is a StringBuilder itself.
+    private static void writeLines(List<Task> tasks, int from, int to, Appendable out) throws IOException {
+        boolean isDirect = out instanceof StringBuilder;
+        StringBuilder chunk = isDirect ? (StringBuilder) out : new StringBuilder(STREAM_CHUNK + 256);
+        Iterator<Task> it = from == 0 ? tasks.iterator() : tasks.subList(from, to).iterator();
+        for (int i = from; i < to; i++) {
+            chunk.append('\n');
+            appendEntry(chunk, i + 1, it.next());
+            if (!isDirect && chunk.length() >= STREAM_CHUNK) {
+                out.append(chunk);
+                chunk.setLength(0);
+            }
+        }
+        if (!isDirect) {
+            out.append(chunk);
+        }
+    }
+
+    // Formats one display line, e.g. "2. #2 [D][ ] return book (by: Oct 15 2019 18:00)"
+    private static void appendLine(StringBuilder sb, int idx1Based, Task t) {
+        appendEntry(sb, idx1Based, t);
+        sb.append('\n');
+    }
+
+    private static void appendEntry(StringBuilder sb, int idx1Based, Task t) {
+        sb.append(idx1Based).append(". ").append(t.getIdTag()).append(' ').append(t);
     }
 
     /**
-     * Finds tasks whose string representation contains the given keyword.
+     * Finds tasks whose string representation contains the given keyword, ignoring case.
+     * Keywords of three or more characters are looked up in the trigram index when it is
+     * enabled, and every candidate is checked, so results are the same as a full scan.
      *
      * @param keyword Keyword to search for.
      * @return Formatted string containing matching tasks.
@@ -140,20 +645,350 @@ public class TaskList {
     public String findToDisplayString(String keyword) {
         assert keyword != null : "keyword should not be null";
         assert !keyword.isBlank() : "keyword should not be blank";
+        String lowerKeyword = keyword.toLowerCase();
+        if (substringIndex == null || lowerKeyword.length() < TrigramIndex.GRAM_LENGTH) {
+            return findToDisplayString(tasks, keyword);
+        }
+
+        Set<Task> hits = new HashSet<>();
+        for (int id : substringIndex.candidates(lowerKeyword)) {
+            Task t = getById(id);
+            if (t != null && !hits.contains(t) && TrigramIndex.searchText(t).contains(lowerKeyword)) {
+                hits.add(t);
+            }
+        }
+        StringBuilder sb = new StringBuilder("Here are the matching tasks in your list:\n");
+        if (!appendInListOrder(sb, hits)) {
+            return "Here are the matching tasks in your list:\n(no matching tasks found)";
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Scans the given tasks as {@link #findToDisplayString(String)} does without an index.
+     */
+    static String findToDisplayString(List<Task> tasks, String keyword) {
+        String lowerKeyword = keyword.toLowerCase();
+        StringBuilder sb = new StringBuilder("Here are the matching tasks in your list:\n");
+        if (!appendMatches(sb, tasks, t -> TrigramIndex.searchText(t).contains(lowerKeyword))) {
+            return "Here are the matching tasks in your list:\n(no matching tasks found)";
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Appends display lines for the given tasks that pass the test, in list order.
+     * Lists of {@link #PARALLEL_SCAN_THRESHOLD} tasks or more are tested in parallel on the
+     * common fork-join pool, so the test must be safe to run from several threads.
+     *
+     * @return True if any line was appended.
+     */
+    static boolean appendMatches(StringBuilder sb, List<Task> tasks, Predicate<Task> test) {
+        if (tasks.size() < PARALLEL_SCAN_THRESHOLD) {
+            boolean isFound = false;
+            int idx = 0;
+            for (Task t : tasks) {
+                idx++;
+                if (test.test(t)) {
+                    appendLine(sb, idx, t);
+                    isFound = true;
+                }
+            }
+            return isFound;
+        }
+
+        // Workers index into the list, so a tree is flattened into an array first.
+        List<Task> indexable = tasks instanceof RandomAccess ? tasks : Arrays.asList(tasks.toArray(new Task[0]));
+        int[] hits = IntStream.range(0, indexable.size())
+                .parallel()
+                .filter(i -> test.test(indexable.get(i)))
+                .toArray();
+        for (int i : hits) {
+            appendLine(sb, i + 1, indexable.get(i));
+        }
+        return hits.length > 0;
+    }
+
+    /**
+     * Finds tasks whose descriptions contain all the given words as whole words,
+     * ignoring case. Uses the word index when it is enabled and scans every task otherwise.
+     *
+     * @param words Space-separated words to search for.
+     * @return Formatted string containing matching tasks.
+     */
+    public String findWordsToDisplayString(String words) {
+        assert words != null : "words should not be null";
+        List<String> query = TokenIndex.tokenize(words);
         StringBuilder sb = new StringBuilder("Here are the matching tasks in your list:\n");
         boolean isFound = false;
-        for (int i = 0; i < tasks.size(); i++) {
-            if (tasks.get(i).toString().toLowerCase().contains(keyword.toLowerCase())) {
-                sb.append(i + 1).append(". ").append(tasks.get(i)).append("\n");
+
+        if (wordIndex != null) {
+            isFound = appendInListOrder(sb, wordIndex.match(query));
+        } else if (!query.isEmpty()) {
+            isFound = appendMatches(sb, tasks, t -> TokenIndex.tokenize(t.getDescription()).containsAll(query));
+        }
+
+        if (!isFound) {
+            return "Here are the matching tasks in your list:\n(no matching tasks found)";
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Lists the events overlapping the given range, earliest first. An event ending
+     * exactly when the range starts, or starting exactly when it ends, does not overlap.
+     * If both ends are the same instant, the events under way at that instant are listed.
+     *
+     * @param from Start of the range.
+     * @param to End of the range.
+     * @return Formatted string containing the overlapping events.
+     */
+    public String overlapsToDisplayString(LocalDateTime from, LocalDateTime to) {
+        assert !to.isBefore(from) : "range should not end before it starts";
+        List<Event> hits = eventIndex().overlapping(from, to);
+        if (hits.isEmpty()) {
+            return "Nothing is scheduled from " + from.format(DATE_TIME_FMT) + " to " + to.format(DATE_TIME_FMT) + ".";
+        }
+        StringBuilder sb = new StringBuilder("Here are the events from ")
+                .append(from.format(DATE_TIME_FMT)).append(" to ").append(to.format(DATE_TIME_FMT)).append(":\n");
+        appendInGivenOrder(sb, hits);
+        return sb.toString().trim();
+    }
+
+    /**
+     * Lists the events taking place on the given day, earliest first.
+     *
+     * @param date The day.
+     * @return Formatted string containing that day's events.
+     */
+    public String onToDisplayString(LocalDate date) {
+        List<Event> hits = eventIndex().overlapping(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+        if (hits.isEmpty()) {
+            return "You have no events on " + date.format(DAY_FMT) + ".";
+        }
+        StringBuilder sb = new StringBuilder("Here are your events on ").append(date.format(DAY_FMT)).append(":\n");
+        appendInGivenOrder(sb, hits);
+        return sb.toString().trim();
+    }
+
+    /**
+     * Lists the gaps between the events of the given day, e.g. {@code 00:00 - 14:00}.
+     *
+     * @param date The day.
+     * @return Formatted string containing that day's free slots.
+     */
+    public String freeToDisplayString(LocalDate date) {
+        LocalDateTime dayStart = date.atStartOfDay();
+        LocalDateTime dayEnd = date.plusDays(1).atStartOfDay();
+        StringBuilder sb = new StringBuilder("Here are your free slots on ").append(date.format(DAY_FMT)).append(":\n");
+        boolean isFound = false;
+
+        LocalDateTime freeFrom = dayStart;
+        for (Event e : eventIndex().overlapping(dayStart, dayEnd)) {
+            if (e.getFrom().isAfter(freeFrom)) {
+                appendSlot(sb, freeFrom, e.getFrom(), dayEnd);
                 isFound = true;
             }
+            if (e.getTo().isAfter(freeFrom)) {
+                freeFrom = e.getTo().isBefore(dayEnd) ? e.getTo() : dayEnd;
+            }
+        }
+        if (freeFrom.isBefore(dayEnd)) {
+            appendSlot(sb, freeFrom, dayEnd, dayEnd);
+            isFound = true;
         }
+
         if (!isFound) {
-            return "Here are the matching tasks in your list:\n(no matching tasks found)";
+            return "You have no free time on " + date.format(DAY_FMT) + ".";
         }
         return sb.toString().trim();
     }
 
+    /**
+     * Lists the deadlines due on or before the given day, earliest first.
+     *
+     * @param date Last day to include.
+     * @param isDone Status to keep, or null for both.
+     * @return Formatted string containing the deadlines.
+     */
+    public String dueToDisplayString(LocalDate date, Boolean isDone) {
+        List<Deadline> hits = deadlineIndex().dueBefore(date.plusDays(1).atStartOfDay(), isDone);
+        if (hits.isEmpty()) {
+            return "Nothing is due by " + date.format(DAY_FMT) + ".";
+        }
+        StringBuilder sb = new StringBuilder("Here are the deadlines due by ")
+                .append(date.format(DAY_FMT)).append(":\n");
+        appendInGivenOrder(sb, hits);
+        return sb.toString().trim();
+    }
+
+    /**
+     * Lists the next deadlines due at or after the given time, earliest first.
+     *
+     * @param now Current time.
+     * @param count Maximum number of deadlines to list.
+     * @param isDone Status to keep, or null for both.
+     * @return Formatted string containing the deadlines.
+     */
+    public String upcomingToDisplayString(LocalDateTime now, int count, Boolean isDone) {
+        List<Deadline> hits = deadlineIndex().dueFrom(now, isDone, count);
+        if (hits.isEmpty()) {
+            return "You have no upcoming deadlines.";
+        }
+        StringBuilder sb = new StringBuilder("Here are your upcoming deadlines:\n");
+        appendInGivenOrder(sb, hits);
+        return sb.toString().trim();
+    }
+
+    /**
+     * Lists the deadlines that passed before the given time, earliest first.
+     *
+     * @param now Current time.
+     * @param isDone Status to keep, or null for both.
+     * @return Formatted string containing the deadlines.
+     */
+    public String overdueToDisplayString(LocalDateTime now, Boolean isDone) {
+        List<Deadline> hits = deadlineIndex().dueBefore(now, isDone);
+        if (hits.isEmpty()) {
+            return "You have no overdue deadlines.";
+        }
+        StringBuilder sb = new StringBuilder("Here are your overdue deadlines:\n");
+        appendInGivenOrder(sb, hits);
+        return sb.toString().trim();
+    }
+
+    // The live event index, or in compact mode a throwaway one built by scanning the list
+    private EventIntervalTree eventIndex() {
+        if (events != null) {
+            return events;
+        }
+        EventIntervalTree scanned = new EventIntervalTree();
+        for (Task t : tasks) {
+            if (t instanceof Event) {
+                scanned.add((Event) t);
+            }
+        }
+        return scanned;
+    }
+
+    // The live deadline index, or in compact mode a throwaway one built by scanning the list
+    private DeadlineIndex deadlineIndex() {
+        if (deadlines != null) {
+            return deadlines;
+        }
+        DeadlineIndex scanned = new DeadlineIndex();
+        for (Task t : tasks) {
+            if (t instanceof Deadline) {
+                scanned.add((Deadline) t);
+            }
+        }
+        return scanned;
+    }
+
+    // Formats one free slot, writing the end of the day as 24:00
+    private static void appendSlot(StringBuilder sb, LocalDateTime from, LocalDateTime to, LocalDateTime dayEnd) {
+        sb.append(from.format(TIME_FMT)).append(" - ")
+                .append(to.equals(dayEnd) ? "24:00" : to.format(TIME_FMT)).append("\n");
+    }
+
+    /**
+     * Appends display lines for the given tasks of this list, in list order.
+     *
+     * @return True if any line was appended.
+     */
+    private boolean appendInListOrder(StringBuilder sb, Collection<? extends Task> hits) {
+        int[] positions = positionsOf(hits);
+        Arrays.sort(positions);
+        for (int pos : positions) {
+            appendLine(sb, pos, tasks.get(pos - 1));
+        }
+        return positions.length > 0;
+    }
+
+    /**
+     * Appends display lines for the given tasks of this list, in the order given.
+     */
+    private void appendInGivenOrder(StringBuilder sb, List<? extends Task> hits) {
+        int[] positions = positionsOf(hits);
+        for (int i = 0; i < positions.length; i++) {
+            appendLine(sb, positions[i], hits.get(i));
+        }
+    }
+
+    /**
+     * Returns the 1-based positions of the given tasks of this list, in iteration order.
+     * With array backing each one is looked up in O(1) and with tree backing ranked in
+     * O(log n), so an index-backed query costs time in proportion to its hits. Compact lists
+     * keep no positions (their queries scan anyway), so one pass over the list matches the
+     * tasks by ID, as compact lists hand out a new object on every read.
+     */
+    private int[] positionsOf(Collection<? extends Task> hits) {
+        int[] positions = new int[hits.size()];
+        int n = 0;
+        if (positionById != null) {
+            for (Task t : hits) {
+                positions[n++] = positionById[t.getId()];
+            }
+            return positions;
+        }
+        if (tasks instanceof TaskTree) {
+            for (Task t : hits) {
+                positions[n++] = tasks.indexOf(t) + 1;
+            }
+            return positions;
+        }
+
+        HashMap<Integer, Integer> wanted = new HashMap<>();
+        for (Task t : hits) {
+            wanted.put(t.getId(), 0);
+        }
+        int idx = 0;
+        for (Task t : tasks) {
+            idx++;
+            if (wanted.containsKey(t.getId())) {
+                wanted.put(t.getId(), idx);
+            }
+        }
+        for (Task t : hits) {
+            positions[n++] = wanted.get(t.getId());
+        }
+        return positions;
+    }
+
+    /**
+     * Turns the word index on or off. Turning it on indexes every task in the list;
+     * turning it off frees the index, and whole-word searches scan the list instead.
+     * Compact lists never keep one.
+     *
+     * @param isEnabled Whether to keep a word index.
+     */
+    public void setWordIndexEnabled(boolean isEnabled) {
+        if (!isEnabled || compact != null) {
+            wordIndex = null;
+        } else if (wordIndex == null) {
+            wordIndex = new TokenIndex();
+            for (Task t : tasks) {
+                wordIndex.add(t);
+            }
+        }
+    }
+
+    /**
+     * Turns the trigram index used by {@link #findToDisplayString(String)} on or off.
+     * Turning it off frees the index, and searches scan the list instead.
+     * Compact lists never keep one.
+     *
+     * @param isEnabled Whether to keep a trigram index.
+     */
+    public void setSubstringIndexEnabled(boolean isEnabled) {
+        if (!isEnabled || compact != null) {
+            substringIndex = null;
+        } else if (substringIndex == null) {
+            substringIndex = new TrigramIndex();
+            substringIndex.rebuild(tasks);
+        }
+    }
+
     /**
      * Inserts a task at the given 1-based index.
      *
@@ -161,7 +996,10 @@ public class TaskList {
      * @param task Task to insert.
      */
     public void addAt(int idx1Based, Task task) {
+        register(task);
         tasks.add(idx1Based - 1, task);
+        trackPositions(idx1Based - 1);
+        version++;
     }
 
     /**
@@ -174,4 +1012,84 @@ public class TaskList {
         return tasks.get(idx1Based - 1);
     }
 
+    /**
+     * Returns the task with the given ID.
+     *
+     * @param id Task ID.
+     * @return The task, or null if no task in the list has that ID.
+     */
+    public Task getById(int id) {
+        if (compact != null) {
+            int idx = compact.indexOfId(id);
+            return idx == -1 ? null : compact.get(idx);
+        }
+        return byId.get(id);
+    }
+
+    /**
+     * Returns the 1-based index of the task with the given ID.
+     * This is O(1) with {@link Backing#ARRAY}, O(log n) with {@link Backing#TREE} and a
+     * linear scan with {@link Backing#COMPACT}.
+     *
+     * @param id Task ID.
+     * @return 1-based index, or -1 if no task in the list has that ID.
+     */
+    public int indexOfId(int id) {
+        if (compact != null) {
+            int idx = compact.indexOfId(id);
+            return idx == -1 ? -1 : idx + 1;
+        }
+        if (positionById != null) {
+            int pos = id > 0 && id < positionById.length ? positionById[id] : 0;
+            return pos == 0 ? -1 : pos;
+        }
+        Task t = byId.get(id);
+        return t == null ? -1 : tasks.indexOf(t) + 1;
+    }
+
+    // Records the positions of the tasks from the given 0-based index to the end of the list
+    private void trackPositions(int from) {
+        if (positionById == null) {
+            return;
+        }
+        if (positionById.length < nextId) {
+            positionById = Arrays.copyOf(positionById, Math.max(nextId, positionById.length * 2));
+        }
+        for (int i = from; i < tasks.size(); i++) {
+            positionById[tasks.get(i).getId()] = i + 1;
+        }
+    }
+
+    /**
+     * Gives the task an ID if it has none yet (or if its ID is taken or too large, e.g. in
+     * a corrupted save file), then adds it to the ID, status, word, trigram, event and
+     * deadline indexes.
+     */
+    private void register(Task t) {
+        if (t.getId() == 0 || t.getId() > MAX_ID || liveIds.get(t.getId())) {
+            t.assignId(nextId);
+        }
+        nextId = Math.max(nextId, t.getId() + 1);
+        if (byId != null) {
+            byId.put(t.getId(), t);
+        }
+        liveIds.set(t.getId());
+        typeCounts[typeSlot(t)]++;
+        if (t.isDone()) {
+            doneIds.set(t.getId());
+            doneTypeCounts[typeSlot(t)]++;
+        }
+        if (wordIndex != null) {
+            wordIndex.add(t);
+        }
+        if (substringIndex != null) {
+            substringIndex.add(t);
+        }
+        if (events != null && t instanceof Event) {
+            events.add((Event) t);
+        } else if (deadlines != null && t instanceof Deadline) {
+            deadlines.add((Deadline) t);
+        }
+    }
+
 }
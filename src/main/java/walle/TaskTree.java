@@ -0,0 +1,298 @@
+package walle;
+
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * A list of tasks kept in a treap ordered by position, where every node knows the size of
+ * its subtree. Getting, inserting and removing at an index all take O(log n) expected time,
+ * so undoing a delete near the top of a long list no longer shifts every later task.
+ *
+ * Nodes also link to their parents and each task is mapped to its node, so
+ * {@link #indexOf(Object)} walks up from the task instead of scanning the list.
+ * A task may therefore appear at most once in the list.
+ */
+final class TaskTree extends AbstractList<Task> {
+
+    private static final class Node {
+        private Task task;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+        private Node parent;
+
+        private Node(Task task, int priority) {
+            this.task = task;
+            this.priority = priority;
+        }
+    }
+
+    private final IdentityHashMap<Task, Node> nodes = new IdentityHashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public Task get(int index) {
+        return nodeAt(index).task;
+    }
+
+    @Override
+    public Task set(int index, Task task) {
+        assert !nodes.containsKey(task) || nodes.get(task) == nodeAt(index) : "task is already in the list";
+        Node n = nodeAt(index);
+        Task old = n.task;
+        nodes.remove(old);
+        n.task = task;
+        nodes.put(task, n);
+        return old;
+    }
+
+    @Override
+    public void add(int index, Task task) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        assert !nodes.containsKey(task) : "task is already in the list";
+        Node n = new Node(task, random.nextInt());
+        nodes.put(task, n);
+        root = insert(root, index, n);
+        root.parent = null;
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Node n = nodeAt(index);
+        root = remove(root, index);
+        if (root != null) {
+            root.parent = null;
+        }
+        nodes.remove(n.task);
+        modCount++;
+        return n.task;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        nodes.clear();
+        modCount++;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Node n = nodes.get(o);
+        if (n == null) {
+            return -1;
+        }
+        int idx = size(n.left);
+        for (Node p = n.parent; p != null; n = p, p = p.parent) {
+            if (n == p.right) {
+                idx += size(p.left) + 1;
+            }
+        }
+        return idx;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return nodes.containsKey(o);
+    }
+
+    /**
+     * Walks the tree in order through the parent links, so a full pass is O(n) rather
+     * than one O(log n) lookup per element.
+     */
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<Task>() {
+            private Node next = first(root);
+            private Node last;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Task next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = successor(next);
+                return last.task;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                TaskTree.this.remove(indexOf(last.task));
+                last = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    private Node nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (index < leftSize) {
+                n = n.left;
+            } else if (index == leftSize) {
+                return n;
+            } else {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    private static Node insert(Node n, int index, Node added) {
+        if (n == null) {
+            return added;
+        }
+        int leftSize = size(n.left);
+        if (index <= leftSize) {
+            n.left = insert(n.left, index, added);
+            n.left.parent = n;
+            if (n.left.priority > n.priority) {
+                return rotateRight(n);
+            }
+        } else {
+            n.right = insert(n.right, index - leftSize - 1, added);
+            n.right.parent = n;
+            if (n.right.priority > n.priority) {
+                return rotateLeft(n);
+            }
+        }
+        update(n);
+        return n;
+    }
+
+    private static Node remove(Node n, int index) {
+        int leftSize = size(n.left);
+        if (index == leftSize) {
+            return merge(n.left, n.right);
+        }
+        if (index < leftSize) {
+            n.left = remove(n.left, index);
+            if (n.left != null) {
+                n.left.parent = n;
+            }
+        } else {
+            n.right = remove(n.right, index - leftSize - 1);
+            if (n.right != null) {
+                n.right.parent = n;
+            }
+        }
+        update(n);
+        return n;
+    }
+
+    // Joins two subtrees where every position in a comes before every position in b.
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.right.parent = a;
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.left.parent = b;
+        update(b);
+        return b;
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        if (n.left != null) {
+            n.left.parent = n;
+        }
+        l.right = n;
+        l.parent = n.parent;
+        n.parent = l;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        if (n.right != null) {
+            n.right.parent = n;
+        }
+        r.left = n;
+        r.parent = n.parent;
+        n.parent = r;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private static Node first(Node n) {
+        if (n == null) {
+            return null;
+        }
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    private static Node successor(Node n) {
+        if (n.right != null) {
+            return first(n.right);
+        }
+        Node p = n.parent;
+        while (p != null && n == p.right) {
+            n = p;
+            p = p.parent;
+        }
+        return p;
+    }
+
+    private static void update(Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+}
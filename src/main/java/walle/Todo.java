@@ -18,8 +18,12 @@ public class Todo extends Task {
 
     // Display the Tdodo task
     @Override
-    public String toString() {
-        return "[T]" + super.toString();
+    protected String render() {
+        return "[T]" + super.render();
     }
-}
 
+    @Override
+    Todo copy() {
+        return (Todo) copyStateTo(new Todo(getDescription()));
+    }
+}
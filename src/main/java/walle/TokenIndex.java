@@ -0,0 +1,83 @@
+package walle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maps each lower-cased word of a task description to the tasks containing it.
+ * Words are maximal runs of letters and digits, so "Return book, then CS2103!" holds
+ * {@code return}, {@code book}, {@code then} and {@code cs2103}.
+ *
+ * The index is updated task by task as the list changes, and a lookup only touches the
+ * tasks filed under the query words.
+ */
+final class TokenIndex {
+
+    private final HashMap<String, HashSet<Task>> postings = new HashMap<>();
+
+    /**
+     * Splits text into lower-cased words.
+     */
+    static List<String> tokenize(String text) {
+        String lower = text.toLowerCase();
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean isWordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    void add(Task t) {
+        for (String word : tokenize(t.getDescription())) {
+            postings.computeIfAbsent(word, w -> new HashSet<>()).add(t);
+        }
+    }
+
+    void remove(Task t) {
+        for (String word : tokenize(t.getDescription())) {
+            HashSet<Task> tasks = postings.get(word);
+            if (tasks != null && tasks.remove(t) && tasks.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Returns the tasks whose descriptions contain every one of the given words.
+     * Starts from the rarest word so the work is bounded by its number of tasks.
+     *
+     * @param words Lower-cased words, as returned by {@link #tokenize(String)}.
+     * @return Matching tasks, in no particular order.
+     */
+    Set<Task> match(List<String> words) {
+        if (words.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<HashSet<Task>> lists = new ArrayList<>(words.size());
+        for (String word : words) {
+            HashSet<Task> tasks = postings.get(word);
+            if (tasks == null) {
+                return Collections.emptySet();
+            }
+            lists.add(tasks);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        Set<Task> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package walle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Maps every three-character substring (trigram) of each task's lower-cased display
+ * string, e.g. {@code "[d][ ] return book (by: oct 15 2019 18:00)"}, to the IDs of the
+ * tasks containing it. Any task containing a query of three or more characters is filed
+ * under each of the query's trigrams, so the shortest of those ID lists holds every match.
+ *
+ * Lists only ever grow: a deleted or re-rendered task leaves stale IDs behind, which is
+ * harmless because callers check each candidate against the task itself. Once stale
+ * entries outnumber live ones, {@link #needsRebuild()} asks for a fresh index.
+ */
+final class TrigramIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    private static final class IdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private final HashMap<Long, IdList> postings = new HashMap<>();
+    private long liveEntries;
+    private long staleEntries;
+
+    /**
+     * Returns the text a task is indexed and matched under.
+     */
+    static String searchText(Task t) {
+        return t.toLowerCaseString();
+    }
+
+    void add(Task t) {
+        String text = searchText(t);
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            postings.computeIfAbsent(gram(text, i), g -> new IdList()).add(t.getId());
+        }
+        liveEntries += gramCount(text);
+    }
+
+    /**
+     * Forgets a task that left the list. Its entries stay behind until the next rebuild.
+     */
+    void remove(Task t) {
+        long count = gramCount(searchText(t));
+        liveEntries -= count;
+        staleEntries += count;
+    }
+
+    /**
+     * Re-files a task whose display string changed, e.g. after being marked as done.
+     *
+     * @param t The changed task.
+     * @param oldText Its search text before the change.
+     */
+    void update(Task t, String oldText) {
+        long count = gramCount(oldText);
+        liveEntries -= count;
+        staleEntries += count;
+        add(t);
+    }
+
+    boolean needsRebuild() {
+        return staleEntries > Math.max(liveEntries, 1 << 16);
+    }
+
+    /**
+     * Re-indexes the given tasks from scratch, dropping every stale entry.
+     */
+    void rebuild(Iterable<Task> tasks) {
+        postings.clear();
+        liveEntries = 0;
+        staleEntries = 0;
+        for (Task t : tasks) {
+            add(t);
+        }
+    }
+
+    /**
+     * Returns the IDs of every task that may contain the given lower-cased query, possibly
+     * with repeats and IDs of tasks that no longer match.
+     *
+     * @param query Lower-cased query of at least {@link #GRAM_LENGTH} characters.
+     * @return Candidate task IDs.
+     */
+    int[] candidates(String query) {
+        assert query.length() >= GRAM_LENGTH : "query too short for the trigram index";
+        IdList shortest = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            IdList ids = postings.get(gram(query, i));
+            if (ids == null) {
+                return new int[0];
+            }
+            if (shortest == null || ids.size < shortest.size) {
+                shortest = ids;
+            }
+        }
+        return Arrays.copyOf(shortest.ids, shortest.size);
+    }
+
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long gramCount(String text) {
+        return Math.max(0, text.length() - GRAM_LENGTH + 1);
+    }
+}
@@ -1,5 +1,9 @@
 package walle;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Scanner;
 
@@ -96,19 +100,25 @@ public class Ui {
 
     /**
      * Displays all tasks currently stored in the task list.
+     * The list is streamed to the console in chunks rather than built as one string.
      *
      * @param tasks The task list to display.
      */
     public void showTaskList(TaskList tasks) {
         showLine();
-        System.out.println("These are all your tasks:");
-
         if (tasks.size() == 0) {
             System.out.println("  (You have no task available)");
         } else {
-            System.out.println(tasks.getTasks());
+            // Not closed, as that would close System.out
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+            try {
+                tasks.writeDisplayTo(out);
+                out.write(System.lineSeparator());
+                out.flush();
+            } catch (IOException e) {
+                System.out.println("Oops — could not print the list: " + e.getMessage());
+            }
         }
-
         showLine();
     }
 
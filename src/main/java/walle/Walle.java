@@ -1,20 +1,67 @@
 package walle;
 
+import java.time.LocalDateTime;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.List;
 
 
 public class Walle {
+    // Longer lists are shown a page at a time, as one huge label would stall the GUI
+    private static final int FULL_LIST_LIMIT = 1000;
+    private static final String HELP_TEXT = "Here are the currently supported commands:\n"
+            + "list\n"
+            + "list page <n> | list --limit <n> --offset <n>\n"
+            + "list done | list pending\n"
+            + "count\n"
+            + "todo <description>\n"
+            + "deadline <description> /by <yyyy-MM-dd HHmm>\n"
+            + "event <description> /from <yyyy-MM-dd HHmm> /to <yyyy-MM-dd HHmm>\n"
+            + "mark <task number or #id>\n"
+            + "unmark <task number or #id>\n"
+            + "mark | unmark | delete <numbers and ranges, e.g. 4,9,12-20>\n"
+            + "mark | unmark | delete all [done:0|done:1]\n"
+            + "find <keyword>\n"
+            + "find -w <whole words>\n"
+            + "overlaps <yyyy-MM-dd HHmm> <yyyy-MM-dd HHmm>\n"
+            + "on <yyyy-MM-dd>\n"
+            + "free <yyyy-MM-dd>\n"
+            + "due <yyyy-MM-dd> [done:0|done:1]\n"
+            + "upcoming <count> [done:0|done:1]\n"
+            + "overdue [done:0|done:1]\n"
+            + "delete <task number or #id>\n"
+            + "begin | commit | rollback\n"
+            + "<command>; <command>; ... (all or nothing)\n"
+            + "bye\n"
+            + "undo";
     private final Ui ui;
     private boolean isExit = false;
-    private final Storage storage;
+    // The backend, or while a transaction is open, a wrapper holding its writes back
+    private Storage storage;
+    private Transaction transaction;
     private final TaskList tasks;
     private final Deque<UndoAction> undoStack = new ArrayDeque<>();
+    private final CommandRegistry commands = new CommandRegistry();
 
     private interface UndoAction {
         String undo() throws WalleException;
     }
 
+    // An open begin ... commit block: where its writes go and where its undo entries start
+    private static final class Transaction {
+        private final Storage outer;
+        private final DeferredStorage deferred;
+        private final int undoMark;
+
+        private Transaction(Storage outer, int undoMark) {
+            this.outer = outer;
+            this.deferred = new DeferredStorage(outer);
+            this.undoMark = undoMark;
+        }
+    }
+
 
 
     /**
@@ -23,18 +70,70 @@ public class Walle {
      * returns the response string for the UI to display.
      */
     public Walle(String saveFilePath) {
-        ui = new Ui();
-        storage = new Storage(saveFilePath);
+        this(Storage.open(saveFilePath));
+    }
 
+    /**
+     * Creates the chatbot on top of the given storage backend.
+     *
+     * @param storage Backend the tasks are loaded from and persisted to.
+     */
+    public Walle(Storage storage) {
+        this(storage, TaskList.Backing.TREE);
+    }
+
+    /**
+     * Creates the chatbot on top of the given storage backend, holding tasks in memory
+     * the given way, e.g. {@link TaskList.Backing#COMPACT} for very large lists.
+     * Except in compact mode, the tasks are kept in a {@link ConcurrentTaskList}, so that
+     * background compactions write an immutable snapshot while commands go on.
+     *
+     * @param storage Backend the tasks are loaded from and persisted to.
+     * @param backing How the tasks are held in memory.
+     */
+    public Walle(Storage storage, TaskList.Backing backing) {
+        ui = new Ui();
+        this.storage = storage;
 
         TaskList loaded;
         try {
-            loaded = new TaskList(storage.load());
+            ArrayList<Task> stored = storage.load();
+            loaded = backing == TaskList.Backing.COMPACT
+                    ? new TaskList(stored, backing, storage.getIdHighWater())
+                    : new ConcurrentTaskList(stored, backing, storage.getIdHighWater());
+            if (loaded.hasReassignedIds()) {
+                // Persist the IDs just given to tasks from an older or damaged save file.
+                storage.save(loaded.getTasks());
+            }
         } catch (WalleException e) {
             // In GUI, we return a message instead of printing.
-            loaded = new TaskList();
+            loaded = backing == TaskList.Backing.COMPACT ? new TaskList(backing) : new ConcurrentTaskList(backing);
         }
         tasks = loaded;
+        storage.attach(tasks);
+        registerCommands();
+        compactIfNeeded();
+    }
+
+    // Finds where a task currently sits in the list, by its stable ID
+    private int indexOfId(int id) throws WalleException {
+        int idx = tasks.indexOfId(id);
+        if (idx == -1) {
+            throw new WalleException("Nothing to undo: that task is no longer in the list.");
+        }
+        return idx;
+    }
+
+    // Folds a long journal into a fresh snapshot in the background
+    private void compactIfNeeded() {
+        if (!storage.needsCompaction()) {
+            return;
+        }
+        try {
+            storage.compactAsync(tasks.getTasks());
+        } catch (WalleException e) {
+            // The journal is still intact, so this is retried on the next command.
+        }
     }
 
     // Returns the welcome message shown when app starts
@@ -54,154 +153,386 @@ public class Walle {
     public String getResponse(String input) {
         assert input != null : "UI should never pass null input";
         try {
-            if (Parser.isBye(input)) {
-                isExit = true;
-                return "Bye. Hope to see you again soon!";
-            }
-
-            if (Parser.isHelp(input)) {
-                return "Here are the currently supported commands:\n"
-                        + "list\n"
-                        + "todo <description>\n"
-                        + "deadline <description> /by <yyyy-MM-dd HHmm>\n"
-                        + "event <description> /from <yyyy-MM-dd HHmm> /to <yyyy-MM-dd HHmm>\n"
-                        + "mark <task number>\n"
-                        + "unmark <task number>\n"
-                        + "find <keyword>\n"
-                        + "delete <task number>\n"
-                        + "bye\n"
-                        + "undo";
+            compactIfNeeded();
 
+            if (Parser.isPipeline(input, commands::hasVerb)) {
+                return runPipeline(Parser.splitPipeline(input, commands::hasVerb));
             }
+            return dispatch(input);
 
-            if (Parser.isUndo(input)) {
-                return undoLast();
-            }
+        } catch (WalleException e) {
+            return e.getMessage();
+        } catch (Exception e) {
+            return "Oops — something went wrong: " + e.getMessage();
+        }
+    }
 
+    private String dispatch(String input) throws WalleException {
+        Command command = commands.find(input);
+        if (command == null) {
+            throw new WalleException("I don't recognise that command. Type 'help' to see commands.");
+        }
+        return command.execute(input);
+    }
 
-            if (Parser.isList(input)) {
-                return tasks.toDisplayString();
+    // Runs the commands of one line as a unit: if any of them fails, none of them stays applied.
+    private String runPipeline(String[] steps) throws WalleException {
+        for (String step : steps) {
+            if (Parser.isBegin(step) || Parser.isCommit(step) || Parser.isRollback(step)
+                    || Parser.isUndo(step) || Parser.isBye(step)) {
+                throw new WalleException("Oops — begin, commit, rollback, undo and bye "
+                        + "cannot be part of a ; pipeline.");
             }
+        }
 
-            if (Parser.isFind(input)) {
-                String keyword = Parser.parseFindKeyword(input);
-                return tasks.findToDisplayString(keyword);
+        boolean ownsTransaction = transaction == null;
+        if (ownsTransaction) {
+            beginTransaction();
+        }
+        int undoMark = undoStack.size();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < steps.length; i++) {
+            try {
+                sb.append(dispatch(steps[i])).append('\n');
+            } catch (WalleException | RuntimeException e) {
+                undoSince(undoMark);
+                if (ownsTransaction) {
+                    rollbackTransaction();
+                }
+                throw new WalleException(failureReason(e) + "\n(Command " + (i + 1) + " of " + steps.length
+                        + " failed, so none of them were applied.)");
             }
-
-            if (Parser.isDelete(input)) {
-                int idx = Parser.parseDeleteIndex(input, tasks.size());
-                Task removed = tasks.delete(idx);
-
-                // record undo
-                final int deletedIndex = idx;
-                final Task deletedTask = removed;
-                undoStack.push(() -> {
-                    tasks.addAt(deletedIndex, deletedTask);
-                    return "Undid delete. Restored this task:\n  " + deletedTask;
-                });
-
-                storage.save(tasks.getTasks());
-                return "Noted. I've removed this task:\n  " + removed
-                        + "\nNow you have " + tasks.size() + " tasks in the list.";
+        }
+        if (ownsTransaction) {
+            try {
+                flushTransaction();
+            } catch (WalleException | RuntimeException e) {
+                rollbackTransaction();
+                throw new WalleException(failureReason(e) + "\n(Saving failed, so none of the commands were applied.)");
             }
+        }
+        return sb.toString().trim();
+    }
 
+    private String beginTransaction() throws WalleException {
+        if (transaction != null) {
+            throw new WalleException("Oops — a transaction is already open. Use commit or rollback first.");
+        }
+        transaction = new Transaction(storage, undoStack.size());
+        transaction.deferred.attach(tasks);
+        storage = transaction.deferred;
+        return "Started a transaction. Changes are saved on commit, or dropped on rollback.";
+    }
 
-            if (Parser.isMark(input)) {
-                int idx = Parser.parseMarkIndex(input, tasks.size());
-                Task t = tasks.mark(idx);
-
-                final int markIndex = idx;
-                undoStack.push(() -> {
-                    Task undone = tasks.unmark(markIndex);
-                    return "Undid mark. Task is not done:\n  " + undone;
-                });
+    // Writes the transaction's changes as one batch and files them as a single undo entry.
+    private String commitTransaction() throws WalleException {
+        if (transaction == null) {
+            throw new WalleException("Oops — there is no open transaction to commit. Use begin first.");
+        }
+        try {
+            return "Committed " + flushTransaction() + " changes.";
+        } catch (WalleException | RuntimeException e) {
+            throw new WalleException(failureReason(e)
+                    + "\n(The transaction is still open; commit again or roll back.)");
+        }
+    }
 
-                storage.save(tasks.getTasks());
-                return "Nice! I've marked this task as done:\n  " + t;
-            }
+    // Writes first and closes the transaction only once that worked, so a failed write loses nothing.
+    private int flushTransaction() throws WalleException {
+        Transaction committed = transaction;
+        committed.deferred.flush();
+        List<UndoAction> steps = new ArrayList<>();
+        while (undoStack.size() > committed.undoMark) {
+            steps.add(undoStack.pop());
+        }
+        transaction = null;
+        storage = committed.outer;
+        if (!steps.isEmpty()) {
+            undoStack.push(() -> undoTogether(steps));
+        }
+        return steps.size();
+    }
 
+    private String rollbackTransaction() throws WalleException {
+        if (transaction == null) {
+            throw new WalleException("Oops — there is no open transaction to roll back. Use begin first.");
+        }
+        int undone = undoSince(transaction.undoMark);
+        storage = transaction.outer;
+        transaction = null;
+        return "Rolled back " + undone + " changes.";
+    }
 
-            if (Parser.isUnmark(input)) {
-                int idx = Parser.parseUnmarkIndex(input, tasks.size());
-                Task t = tasks.unmark(idx);
+    private static String failureReason(Exception e) {
+        return e instanceof WalleException ? e.getMessage() : "Oops — something went wrong: " + e.getMessage();
+    }
 
-                final int unmarkIndex = idx;
-                undoStack.push(() -> {
-                    Task redone = tasks.mark(unmarkIndex);
-                    return "Undid unmark. Task is done:\n  " + redone;
-                });
+    // Reverts, newest first, every change recorded since the undo stack had the given size.
+    private int undoSince(int undoMark) throws WalleException {
+        int undone = 0;
+        while (undoStack.size() > undoMark) {
+            undoStack.pop().undo();
+            undone++;
+        }
+        return undone;
+    }
 
-                storage.save(tasks.getTasks());
-                return "OK, I've marked this task as not done yet:\n  " + t;
+    // Undoes a committed transaction, newest change first, persisting the result as one batch.
+    private String undoTogether(List<UndoAction> steps) throws WalleException {
+        DeferredStorage deferred = new DeferredStorage(storage);
+        deferred.attach(tasks);
+        Storage outer = storage;
+        storage = deferred;
+        try {
+            for (UndoAction step : steps) {
+                step.undo();
             }
+        } finally {
+            storage = outer;
+            deferred.flush();
+        }
+        return "Undid " + steps.size() + " changes made together.";
+    }
 
+    // Files every command under its first word; forms sharing a word go most specific first.
+    private void registerCommands() {
+        commands.register("bye", Parser::isBye, input -> {
+            String note = "";
+            if (transaction != null) {
+                rollbackTransaction();
+                note = "\n(The open transaction was not committed, so it was rolled back.)";
+            }
+            isExit = true;
+            storage.close();
+            return "Bye. Hope to see you again soon!" + note;
+        });
+        commands.register("begin", Parser::isBegin, input -> beginTransaction());
+        commands.register("commit", Parser::isCommit, input -> commitTransaction());
+        commands.register("rollback", Parser::isRollback, input -> rollbackTransaction());
+        commands.register("help", Parser::isHelp, input -> HELP_TEXT);
+        commands.register("undo", Parser::isUndo, input -> undoLast());
+
+        commands.register("list", Parser::isList, input -> listTasks());
+        commands.register("list", Parser::isListByStatus,
+                input -> tasks.statusToDisplayString(input.endsWith("done")));
+        commands.register("list", Parser::isListPage, input -> {
+            int[] page = Parser.parseListPage(input);
+            return tasks.pageToDisplayString(page[0], page[1]);
+        });
+        commands.register("count", Parser::isCount, input -> tasks.toCountString());
+
+        commands.register("overlaps", Parser::isOverlaps, input -> {
+            LocalDateTime[] range = Parser.parseOverlapsRange(input);
+            return tasks.overlapsToDisplayString(range[0], range[1]);
+        });
+        commands.register("on", Parser::isOn, input -> tasks.onToDisplayString(Parser.parseDay(input, "on")));
+        commands.register("free", Parser::isFree, input -> tasks.freeToDisplayString(Parser.parseDay(input, "free")));
+        commands.register("due", Parser::isDue,
+                input -> tasks.dueToDisplayString(Parser.parseDueDate(input), Parser.parseDoneFilter(input)));
+        commands.register("upcoming", Parser::isUpcoming, input -> {
+            int count = Parser.parseUpcomingCount(input);
+            return tasks.upcomingToDisplayString(LocalDateTime.now(), count, Parser.parseDoneFilter(input));
+        });
+        commands.register("overdue", Parser::isOverdue, input -> {
+            // Done deadlines are not overdue unless asked for explicitly.
+            Boolean isDone = Parser.parseDoneFilter(input);
+            return tasks.overdueToDisplayString(LocalDateTime.now(), isDone == null ? Boolean.FALSE : isDone);
+        });
+
+        commands.register("find", Parser::isFindWords,
+                input -> tasks.findWordsToDisplayString(Parser.parseFindWords(input)));
+        commands.register("find", Parser::isFind,
+                input -> tasks.findToDisplayString(Parser.parseFindKeyword(input)));
+
+        commands.register("delete", Parser::isDelete, this::deleteTask);
+        commands.register("mark", Parser::isMark, this::markTask);
+        commands.register("unmark", Parser::isUnmark, this::unmarkTask);
+        commands.register("todo", Parser::isTodo, input -> addTask(tasks.addTodo(Parser.parseTodoDescription(input))));
+        commands.register("deadline", Parser::isDeadline, input -> {
+            Deadline d = Parser.parseDeadline(input);
+            tasks.add(d);
+            return addTask(d);
+        });
+        commands.register("event", Parser::isEvent, input -> {
+            Event e = Parser.parseEvent(input);
+            tasks.add(e);
+            return addTask(e);
+        });
+    }
 
-            if (Parser.isTodo(input)) {
-                String desc = Parser.parseTodoDescription(input);
-                Task t = tasks.addTodo(desc);
-
-                final int addedIndex = tasks.size(); // last
-                undoStack.push(() -> {
-                    Task removed = tasks.delete(addedIndex);
-                    return "Undid add. Removed this task:\n  " + removed;
-                });
+    private String listTasks() {
+        if (tasks.size() > FULL_LIST_LIMIT) {
+            return tasks.pageToDisplayString(0, TaskList.PAGE_SIZE)
+                    + "\n(Type 'list page 2' to see the next " + TaskList.PAGE_SIZE + " tasks)";
+        }
+        return tasks.toDisplayString();
+    }
 
-                storage.save(tasks.getTasks());
-                return "Got it. I've added this task:\n  " + t
-                        + "\nNow you have " + tasks.size() + " tasks in the list.";
-            }
+    private String deleteTask(String input) throws WalleException {
+        int[] refs = Parser.parseTaskRefs(input, "delete", tasks);
+        if (refs.length != 1) {
+            return deleteTasks(refs);
+        }
+        int idx = refs[0];
+        Task removed = tasks.delete(idx);
+
+        // record undo
+        final int deletedIndex = idx;
+        final Task deletedTask = removed;
+        undoStack.push(() -> {
+            tasks.addAt(deletedIndex, deletedTask);
+            storage.appendInsert(deletedIndex, deletedTask);
+            return "Undid delete. Restored this task:\n  " + deletedTask;
+        });
+
+        storage.appendDelete(idx);
+        return "Noted. I've removed this task:\n  " + removed
+                + "\nNow you have " + tasks.size() + " tasks in the list.";
+    }
 
+    private String markTask(String input) throws WalleException {
+        int[] refs = Parser.parseTaskRefs(input, "mark", tasks);
+        if (refs.length != 1) {
+            return setDone(refs, true);
+        }
+        int idx = refs[0];
+        Task t = tasks.mark(idx);
+
+        final int markedId = t.getId();
+        undoStack.push(() -> {
+            int markIndex = indexOfId(markedId);
+            Task undone = tasks.unmark(markIndex);
+            storage.appendUnmark(markIndex);
+            return "Undid mark. Task is not done:\n  " + undone;
+        });
+
+        storage.appendMark(idx);
+        return "Nice! I've marked this task as done:\n  " + t;
+    }
 
-            if (Parser.isDeadline(input)) {
-                Deadline d = Parser.parseDeadline(input);
-                tasks.add(d);
+    private String unmarkTask(String input) throws WalleException {
+        int[] refs = Parser.parseTaskRefs(input, "unmark", tasks);
+        if (refs.length != 1) {
+            return setDone(refs, false);
+        }
+        int idx = refs[0];
+        Task t = tasks.unmark(idx);
+
+        final int unmarkedId = t.getId();
+        undoStack.push(() -> {
+            int unmarkIndex = indexOfId(unmarkedId);
+            Task redone = tasks.mark(unmarkIndex);
+            storage.appendMark(unmarkIndex);
+            return "Undid unmark. Task is done:\n  " + redone;
+        });
+
+        storage.appendUnmark(idx);
+        return "OK, I've marked this task as not done yet:\n  " + t;
+    }
 
-                final int addedIndex = tasks.size();
-                undoStack.push(() -> {
-                    Task removed = tasks.delete(addedIndex);
-                    return "Undid add. Removed this task:\n  " + removed;
-                });
+    // Deletes several tasks as one change: one pass over the list, one undo entry, one batch of records.
+    private String deleteTasks(int[] idx1Based) throws WalleException {
+        if (idx1Based.length == 0) {
+            throw new WalleException("Oops — no tasks match that, so nothing was deleted.");
+        }
+        List<Task> removed = tasks.deleteAll(idx1Based);
+
+        undoStack.push(() -> {
+            storage.beginBatch();
+            try {
+                // Increasing order puts every task back at its old index
+                for (int i = 0; i < idx1Based.length; i++) {
+                    tasks.addAt(idx1Based[i], removed.get(i));
+                    storage.appendInsert(idx1Based[i], removed.get(i));
+                }
+            } finally {
+                storage.endBatch();
+            }
+            return "Undid delete. Restored " + removed.size() + " tasks.";
+        });
 
-                storage.save(tasks.getTasks());
-                return "Got it. I've added this task:\n  " + d
-                        + "\nNow you have " + tasks.size() + " tasks in the list.";
+        storage.beginBatch();
+        try {
+            // Highest first, so each record's index still names its task when replayed in order
+            for (int i = idx1Based.length - 1; i >= 0; i--) {
+                storage.appendDelete(idx1Based[i]);
             }
+        } finally {
+            storage.endBatch();
+        }
+        return "Noted. I've removed " + removed.size() + " tasks."
+                + "\nNow you have " + tasks.size() + " tasks in the list.";
+    }
 
+    // Marks or unmarks several tasks as one change, with one undo entry and one batch of records.
+    private String setDone(int[] idx1Based, boolean isDone) throws WalleException {
+        if (idx1Based.length == 0) {
+            throw new WalleException("Oops — no tasks match that, so nothing was changed.");
+        }
+        String response = isDone
+                ? "Nice! I've marked " + idx1Based.length + " tasks as done."
+                : "OK, I've marked " + idx1Based.length + " tasks as not done yet.";
+        // Only the tasks whose status flips are recorded; the rest stay out of the journal and the undo
+        int[] changed = Arrays.stream(idx1Based).filter(idx -> tasks.get(idx).isDone() != isDone).toArray();
+        if (changed.length == 0) {
+            return response;
+        }
+        tasks.setDone(changed, isDone);
 
-            if (Parser.isEvent(input)) {
-                Event e = Parser.parseEvent(input);
-                tasks.add(e);
+        undoStack.push(() -> {
+            // Later changes were undone first, so every task is back at the index it was changed at
+            tasks.setDone(changed, !isDone);
+            appendStatus(changed, !isDone);
+            return "Undid " + (isDone ? "mark" : "unmark") + " of " + changed.length + " tasks.";
+        });
 
-                final int addedIndex = tasks.size();
-                undoStack.push(() -> {
-                    Task removed = tasks.delete(addedIndex);
-                    return "Undid add. Removed this task:\n  " + removed;
-                });
+        appendStatus(changed, isDone);
+        return response;
+    }
 
-                storage.save(tasks.getTasks());
-                return "Got it. I've added this task:\n  " + e
-                        + "\nNow you have " + tasks.size() + " tasks in the list.";
+    // Records a status change of each given task, as one batch the backend can write at once
+    private void appendStatus(int[] idx1Based, boolean isDone) throws WalleException {
+        storage.beginBatch();
+        try {
+            for (int idx : idx1Based) {
+                if (isDone) {
+                    storage.appendMark(idx);
+                } else {
+                    storage.appendUnmark(idx);
+                }
             }
-
-
-            throw new WalleException("I don't recognise that command. Type 'help' to see commands.");
-
-        } catch (WalleException e) {
-            return e.getMessage();
-        } catch (Exception e) {
-            return "Oops — something went wrong: " + e.getMessage();
+        } finally {
+            storage.endBatch();
         }
     }
 
+    // Records the undo entry and journals a task that was just added to the list.
+    private String addTask(Task t) throws WalleException {
+        final int addedId = t.getId();
+        undoStack.push(() -> {
+            int addedIndex = indexOfId(addedId);
+            Task removed = tasks.delete(addedIndex);
+            storage.appendDelete(addedIndex);
+            return "Undid add. Removed this task:\n  " + removed;
+        });
+
+        storage.appendAdd(t);
+        return "Got it. I've added this task:\n  " + t
+                + "\nNow you have " + tasks.size() + " tasks in the list.";
+    }
+
     private String undoLast() throws WalleException {
         if (undoStack.isEmpty()) {
             throw new WalleException("Nothing to undo.");
         }
+        if (transaction != null && undoStack.size() <= transaction.undoMark) {
+            throw new WalleException("Oops — only changes made since begin can be undone "
+                    + "until you commit or roll back.");
+        }
 
+        // Each undo action journals its own inverse mutation.
         UndoAction action = undoStack.pop();
-        String msg = action.undo();
-        storage.save(tasks.getTasks());
-        return msg;
+        return action.undo();
     }
 
     // GUI uses this to know if should exit */
@@ -0,0 +1,47 @@
+package walle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+public class BatchRunnerTest {
+
+    @Test
+    void run_answersEveryCommandAndSavesAtTheEnd() throws Exception {
+        InMemoryStorage backend = new InMemoryStorage();
+        BatchRunner runner = new BatchRunner(backend, 0);
+        StringWriter out = new StringWriter();
+        String commands = "todo read book\n\ntodo write essay\nmark 2\nlist\n";
+        int count = runner.run(new BufferedReader(new StringReader(commands)), out);
+
+        assertEquals(4, count);
+        assertTrue(out.toString().endsWith("These are all your tasks:\n1. #1 [T][ ] read book\n"
+                + "2. #2 [T][X] write essay\n"));
+        assertEquals("[[T][ ] read book, [T][X] write essay]", backend.load().toString());
+    }
+
+    @Test
+    void run_savesAtCheckpointsAndStopsAtBye() throws Exception {
+        DeferredStorage storage = new DeferredStorage(new InMemoryStorage());
+        Walle walle = new Walle(storage);
+        walle.getResponse("todo read book");
+        walle.getResponse("mark 1");
+        assertEquals(2, storage.getPendingChanges());
+        assertEquals(0, storage.load().size());
+        storage.flush();
+        assertEquals(0, storage.getPendingChanges());
+        assertEquals("[[T][X] read book]", storage.load().toString());
+
+        InMemoryStorage backend = new InMemoryStorage();
+        StringWriter out = new StringWriter();
+        int count = new BatchRunner(backend, 2).run(
+                new BufferedReader(new StringReader("todo a\ntodo b\ntodo c\nbye\ntodo d\n")), out);
+        assertEquals(4, count);
+        assertTrue(out.toString().endsWith("Bye. Hope to see you again soon!\n"));
+        assertEquals("[[T][ ] a, [T][ ] b, [T][ ] c]", backend.load().toString());
+    }
+}
@@ -0,0 +1,330 @@
+package walle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void journal_replayedOnLoad() throws Exception {
+        FileStorage storage = new FileStorage(tempDir.resolve("walle.txt").toString());
+        storage.appendAdd(new Todo("read book"));
+        storage.appendAdd(new Deadline("return book", LocalDateTime.of(2019, 10, 15, 18, 0)));
+        storage.appendAdd(new Todo("testing"));
+        storage.appendMark(2);
+        storage.appendDelete(1);
+
+        ArrayList<Task> loaded = storage.load();
+        assertEquals(2, loaded.size());
+        assertEquals("[D][X] return book (by: Oct 15 2019 18:00)", loaded.get(0).toString());
+        assertEquals("[T][ ] testing", loaded.get(1).toString());
+    }
+
+    @Test
+    void save_foldsJournalIntoSaveFile() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        FileStorage storage = new FileStorage(savePath.toString());
+        storage.appendAdd(new Todo("read book"));
+        storage.appendInsert(1, new Todo("first"));
+
+        ArrayList<Task> loaded = storage.load();
+        storage.save(loaded);
+
+        assertFalse(Files.exists(tempDir.resolve("walle.txt.journal")));
+        assertEquals(List.of("T | 0 | first", "T | 0 | read book"), Files.readAllLines(savePath));
+    }
+
+    @Test
+    void journal_tornLastRecord_ignored() throws Exception {
+        FileStorage storage = new FileStorage(tempDir.resolve("walle.txt").toString());
+        storage.appendAdd(new Todo("read book"));
+        Files.writeString(tempDir.resolve("walle.txt.journal"), "mar", StandardOpenOption.APPEND);
+
+        assertEquals(1, storage.load().size());
+    }
+
+    @Test
+    void compactAsync_writesSnapshotAndTruncatesJournal() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        FileStorage storage = new FileStorage(savePath.toString());
+        ArrayList<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < FileStorage.COMPACTION_THRESHOLD; i++) {
+            Task t = new Todo("task " + i);
+            tasks.add(t);
+            storage.appendAdd(t);
+        }
+        assertTrue(storage.needsCompaction());
+
+        assertTrue(storage.compactAsync(tasks));
+        storage.appendMark(1);
+        storage.close();
+
+        assertFalse(storage.needsCompaction());
+        assertEquals(FileStorage.COMPACTION_THRESHOLD, Files.readAllLines(savePath).size());
+        List<String> journal = Files.readAllLines(tempDir.resolve("walle.txt.journal"));
+        assertTrue(journal.get(0).startsWith("#journal "));
+        assertEquals(List.of("mark 1"), journal.subList(1, journal.size()));
+        ArrayList<Task> loaded = storage.load();
+        assertEquals(FileStorage.COMPACTION_THRESHOLD, loaded.size());
+        assertTrue(loaded.get(0).isDone());
+    }
+
+    @Test
+    void load_partialSnapshotWithOldJournal_replaysOldJournal() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Files.write(savePath, List.of("T | 0 | read book"));
+        Files.write(tempDir.resolve("walle.txt.journal.old"), List.of("add T | 0 | testing"));
+        Files.write(tempDir.resolve("walle.txt.tmp"), List.of("T | 0 | rea"));
+
+        ArrayList<Task> loaded = new FileStorage(savePath.toString()).load();
+        assertEquals(2, loaded.size());
+        assertFalse(Files.exists(tempDir.resolve("walle.txt.tmp")));
+    }
+
+    @Test
+    void load_partialSnapshotWithEmptyOldJournal_keepsSaveFile() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        FileStorage storage = new FileStorage(savePath.toString());
+        storage.save(List.of(new Todo("read book"), new Todo("testing")));
+        assertFalse(Files.exists(tempDir.resolve("walle.txt.journal.old")));
+
+        // A save with no journal to fold in crashed while writing its snapshot
+        Files.createFile(tempDir.resolve("walle.txt.journal.old"));
+        Files.write(tempDir.resolve("walle.txt.tmp"), List.of("T | 0 | rea"));
+
+        ArrayList<Task> loaded = new FileStorage(savePath.toString()).load();
+        assertEquals(2, loaded.size());
+        assertEquals("[T][ ] testing", loaded.get(1).toString());
+        assertFalse(Files.exists(tempDir.resolve("walle.txt.tmp")));
+    }
+
+    @Test
+    void load_journalAlsoCopiedIntoOldJournal_replayedOnce() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Files.write(savePath, List.of("T | 0 | read book"));
+        Files.write(tempDir.resolve("walle.txt.journal"), List.of("#journal 2a", "add T | 0 | testing", "mark 3"));
+        // A crash between appending the live journal to the old one and deleting it; the copy is torn
+        Files.write(tempDir.resolve("walle.txt.journal.old"), List.of("#journal 1b", "add T | 0 | sleep",
+                "#journal 2a", "add T | 0 | testing", "ma"));
+
+        ArrayList<Task> loaded = new FileStorage(savePath.toString()).load();
+        assertEquals(3, loaded.size());
+        assertEquals("[T][ ] sleep", loaded.get(1).toString());
+        assertEquals("[T][X] testing", loaded.get(2).toString());
+    }
+
+    @Test
+    void binaryFormat_roundTrip() throws Exception {
+        Path savePath = tempDir.resolve("walle.bin");
+        FileStorage storage = new FileStorage(savePath.toString(), SaveFormat.BINARY);
+        ArrayList<Task> tasks = new ArrayList<>();
+        tasks.add(new Todo("read book"));
+        tasks.add(new Deadline("return book", LocalDateTime.of(2019, 10, 15, 18, 0)));
+        tasks.add(new Event("project meeting", LocalDateTime.of(2025, 2, 21, 14, 0),
+                LocalDateTime.of(2025, 2, 21, 16, 0)));
+        tasks.get(1).markDone();
+        storage.save(tasks);
+
+        ArrayList<Task> loaded = storage.load();
+        assertEquals(3, loaded.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals(tasks.get(i).toString(), loaded.get(i).toString());
+        }
+        assertFalse(storage.needsCompaction());
+    }
+
+    @Test
+    void open_binSuffix_writesBinaryFormat() throws Exception {
+        Path binPath = tempDir.resolve("walle.bin");
+        Path textPath = tempDir.resolve("walle.txt");
+        for (Path path : List.of(binPath, textPath)) {
+            Storage storage = Storage.open(path.toString());
+            storage.save(List.of(new Todo("read book")));
+            storage.close();
+        }
+
+        assertTrue(BinaryTaskCodec.hasMagic(Files.readAllBytes(binPath)));
+        assertEquals(List.of("T | 0 | read book"), Files.readAllLines(textPath));
+    }
+
+    @Test
+    void binaryFormat_truncatedFile_reportsTask() throws Exception {
+        Path savePath = tempDir.resolve("walle.bin");
+        FileStorage storage = new FileStorage(savePath.toString(), SaveFormat.BINARY);
+        storage.save(List.of(new Todo("read book"), new Todo("testing")));
+        byte[] bytes = Files.readAllBytes(savePath);
+        Files.write(savePath, Arrays.copyOf(bytes, bytes.length - 3));
+
+        WalleException e = assertThrows(WalleException.class, storage::load);
+        assertTrue(e.getMessage().contains("task 2"));
+    }
+
+    @Test
+    void load_textFileWithBinaryFormat_convertsOnNextSnapshot() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Files.write(savePath, List.of("T | 1 | read book", "D | 0 | return book | 2019-10-15T18:00:00"));
+        FileStorage storage = new FileStorage(savePath.toString(), SaveFormat.BINARY);
+
+        ArrayList<Task> loaded = storage.load();
+        assertTrue(storage.needsCompaction());
+        storage.compactAsync(loaded);
+        storage.close();
+
+        assertTrue(BinaryTaskCodec.hasMagic(Files.readAllBytes(savePath)));
+        assertEquals(loaded.toString(), storage.load().toString());
+    }
+
+    @Test
+    void load_textWithCrlfAndBlankLines_success() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Files.writeString(savePath,
+                "T | 1 | read book\r\n\r\nE | 0 | café | 2025-02-21T14:00:00 | 2025-02-21T16:00:00");
+
+        ArrayList<Task> loaded = new FileStorage(savePath.toString()).load();
+        assertEquals(2, loaded.size());
+        assertEquals("[T][X] read book", loaded.get(0).toString());
+        assertEquals("café", loaded.get(1).getDescription());
+    }
+
+    @Test
+    void load_fileLargerThanReadBlock_linesSplitAcrossBlocksKept() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 250_000; i++) {
+            lines.add("T | " + (i % 2) + " | task number " + i);
+        }
+        String longDescription = "x".repeat(5 << 20);
+        lines.add("T | 1 | " + longDescription);
+        Files.write(savePath, lines);
+
+        ArrayList<Task> loaded = new FileStorage(savePath.toString()).load();
+        assertEquals(250_001, loaded.size());
+        for (int i = 0; i < 250_000; i++) {
+            assertEquals("task number " + i, loaded.get(i).getDescription());
+            assertEquals(i % 2 == 1, loaded.get(i).isDone());
+        }
+        assertEquals(longDescription, loaded.get(250_000).getDescription());
+
+        lines.set(200_000, "X | 0 | broken");
+        Files.write(savePath, lines);
+        WalleException e = assertThrows(WalleException.class, new FileStorage(savePath.toString())::load);
+        assertTrue(e.getMessage().endsWith("(line 200001)"), e.getMessage());
+    }
+
+    @Test
+    void parallelLoad_largeFile_keepsOrder() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 60_000; i++) {
+            lines.add("T | " + (i % 2) + " | task number " + i);
+        }
+        Files.write(savePath, lines);
+        FileStorage storage = new FileStorage(savePath.toString());
+        storage.setParallelLoad(true);
+
+        ArrayList<Task> loaded = storage.load();
+        assertEquals(60_000, loaded.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            assertEquals("task number " + i, loaded.get(i).getDescription());
+            assertEquals(i % 2 == 1, loaded.get(i).isDone());
+        }
+    }
+
+    @Test
+    void parallelLoad_corruptedLine_reportsFileLineNumber() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 60_000; i++) {
+            lines.add(i == 45_678 ? "X | 0 | broken" : "T | 0 | task number " + i);
+        }
+        Files.write(savePath, lines);
+        FileStorage storage = new FileStorage(savePath.toString());
+        storage.setParallelLoad(true);
+
+        WalleException e = assertThrows(WalleException.class, storage::load);
+        assertTrue(e.getMessage().endsWith("(line 45679)"), e.getMessage());
+    }
+
+    @Test
+    void writeBehind_coalescesRecordsUntilFlush() throws Exception {
+        Path journalPath = tempDir.resolve("walle.txt.journal");
+        FileStorage storage = new FileStorage(tempDir.resolve("walle.txt").toString());
+        storage.setWriteBehind(60_000, FsyncPolicy.ALWAYS);
+        for (int i = 0; i < 100; i++) {
+            storage.appendAdd(new Todo("task " + i));
+        }
+        assertFalse(Files.exists(journalPath));
+
+        storage.close();
+        // One header line, then the records
+        assertEquals(101, Files.readAllLines(journalPath).size());
+        assertEquals(100, storage.load().size());
+    }
+
+    @Test
+    void batch_writesRecordsInOneAppendAtTheEnd() throws Exception {
+        Path journalPath = tempDir.resolve("walle.txt.journal");
+        FileStorage storage = new FileStorage(tempDir.resolve("walle.txt").toString());
+        storage.beginBatch();
+        storage.appendAdd(new Todo("read book"));
+        storage.appendAdd(new Todo("testing"));
+        storage.appendMark(2);
+        assertFalse(Files.exists(journalPath));
+
+        storage.endBatch();
+        assertEquals(4, Files.readAllLines(journalPath).size());
+        assertTrue(storage.load().get(1).isDone());
+    }
+
+    @Test
+    void taskIds_roundTripInTextAndBinary() throws Exception {
+        for (SaveFormat format : SaveFormat.values()) {
+            Path savePath = tempDir.resolve("walle-" + format);
+            FileStorage storage = new FileStorage(savePath.toString(), format);
+            TaskList tasks = new TaskList();
+            tasks.addTodo("read book");
+            tasks.addTodo("testing");
+            tasks.delete(1);
+            storage.save(tasks.getTasks());
+
+            ArrayList<Task> loaded = storage.load();
+            assertEquals(2, loaded.get(0).getId());
+        }
+        assertEquals(List.of("#max-id 2", "#2 | T | 0 | testing"), Files.readAllLines(tempDir.resolve("walle-TEXT")));
+    }
+
+    @Test
+    void idHighWater_keptAfterHighestTaskDeletedAndSnapshotTaken() throws Exception {
+        for (SaveFormat format : SaveFormat.values()) {
+            Path savePath = tempDir.resolve("ids-" + format);
+            FileStorage storage = new FileStorage(savePath.toString(), format);
+            TaskList tasks = new TaskList();
+            for (String desc : List.of("a", "b", "c")) {
+                storage.appendAdd(tasks.addTodo(desc));
+            }
+            tasks.delete(3);
+            storage.appendDelete(3);
+
+            FileStorage reopened = new FileStorage(savePath.toString(), format);
+            reopened.save(reopened.load());
+            assertEquals(3, reopened.getIdHighWater());
+
+            FileStorage again = new FileStorage(savePath.toString(), format);
+            assertEquals(2, again.load().size());
+            assertEquals(3, again.getIdHighWater());
+        }
+    }
+}
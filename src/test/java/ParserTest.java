@@ -3,6 +3,8 @@ package walle;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 import org.junit.jupiter.api.Test;
 
@@ -48,13 +50,105 @@ public class ParserTest {
     }
 
     @Test
-    void parseMarkIndex_valid_success() throws Exception {
-        assertEquals(2, Parser.parseMarkIndex("mark 2", 5));
+    void parseTaskRefs_singleNumber_success() throws Exception {
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 5; i++) {
+            tasks.addTodo("task " + i);
+        }
+        assertArrayEquals(new int[] {2}, Parser.parseTaskRefs("mark 2", "mark", tasks));
     }
 
     @Test
-    void parseMarkIndex_outOfRange_throws() {
+    void parseTaskRefs_outOfRange_throws() {
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 3; i++) {
+            tasks.addTodo("task " + i);
+        }
         assertThrows(WalleException.class, () ->
-                Parser.parseMarkIndex("mark 9", 3));
+                Parser.parseTaskRefs("mark 9", "mark", tasks));
+    }
+
+    @Test
+    void parseListPage_pageAndOptions_success() throws Exception {
+        assertArrayEquals(new int[] {100, 50}, Parser.parseListPage("list page 3"));
+        assertArrayEquals(new int[] {200, 50}, Parser.parseListPage("list --limit 50 --offset 200"));
+        assertArrayEquals(new int[] {10, 50}, Parser.parseListPage("list --offset 10"));
+        assertArrayEquals(new int[] {0, 5}, Parser.parseListPage("list --limit 5"));
+    }
+
+    @Test
+    void parseListPage_invalid_throws() {
+        assertThrows(WalleException.class, () -> Parser.parseListPage("list page 0"));
+        assertThrows(WalleException.class, () -> Parser.parseListPage("list page"));
+        assertThrows(WalleException.class, () -> Parser.parseListPage("list --limit"));
+        assertThrows(WalleException.class, () -> Parser.parseListPage("list --limit 0"));
+        assertThrows(WalleException.class, () -> Parser.parseListPage("list --size 5"));
+    }
+
+    @Test
+    void parseDateTime_agreesWithFormatter() throws Exception {
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm");
+        String[] inputs = {"2019-10-15 1800", "2024-02-29 0000", "2019-02-30 1800", "2019-04-31 2359",
+            "2019-10-15 2400", "2019-10-15 2401", "2019-02-32 1800", "2019-13-01 1200", "0000-10-15 1800",
+            "2019-1-15 1800", "2019/10/15 1800", "2019-10-15 18:00", "19999-10-15 1800", "2019-1o-15 1800"};
+        for (String input : inputs) {
+            String padded = "  " + input + " ";
+            LocalDateTime expected;
+            try {
+                expected = LocalDateTime.parse(input, fmt);
+            } catch (DateTimeParseException e) {
+                assertThrows(WalleException.class, () -> Parser.parseDateTime(padded, 2, 2 + input.length()));
+                continue;
+            }
+            assertEquals(expected, Parser.parseDateTime(padded, 2, 2 + input.length()));
+        }
+    }
+
+    @Test
+    void parseEvent_spacedFields_trimmed() throws Exception {
+        Event e = Parser.parseEvent("event   project  meeting  /from  2019-10-15 1400   /to 2019-10-15 1600  ");
+        assertEquals("project  meeting", e.getDescription());
+        assertEquals(LocalDateTime.of(2019, 10, 15, 14, 0), e.getFrom());
+        assertEquals(LocalDateTime.of(2019, 10, 15, 16, 0), e.getTo());
+        assertThrows(WalleException.class, () -> Parser.parseDeadline("deadline /by 2019-10-15 1800"));
+    }
+
+    @Test
+    void parseEvent_descriptionContainsLaterMarker_splitAfterFrom() throws Exception {
+        Event e = Parser.parseEvent("event walk /to the park /from 2019-10-15 1400 /to 2019-10-15 1600");
+        assertEquals("walk /to the park", e.getDescription());
+        assertEquals(LocalDateTime.of(2019, 10, 15, 14, 0), e.getFrom());
+        assertEquals(LocalDateTime.of(2019, 10, 15, 16, 0), e.getTo());
+    }
+
+    @Test
+    void parseEvent_fieldsOutOfOrder_throwsAndScratchIsReset() throws Exception {
+        WalleException e = assertThrows(WalleException.class,
+                () -> Parser.parseEvent("event trip /to 2019-10-16 0800 /from 2019-10-15 2000"));
+        assertTrue(e.getMessage().contains("event format"));
+        // The failed parse leaves nothing behind in the per-thread field offsets
+        Deadline d = Parser.parseDeadline("deadline return book /by 2019-10-15 1800");
+        assertEquals("return book", d.getDescription());
+        assertEquals(LocalDateTime.of(2019, 10, 15, 18, 0), d.getBy());
+    }
+
+    @Test
+    void parseTaskRefs_listsRangesAndAll() throws Exception {
+        TaskList tasks = new TaskList();
+        for (int i = 1; i <= 30; i++) {
+            tasks.addTodo("task " + i);
+        }
+        tasks.mark(3);
+        tasks.mark(5);
+        assertArrayEquals(new int[] {7}, Parser.parseTaskRefs("mark 7", "mark", tasks));
+        assertArrayEquals(new int[] {4, 9, 12, 13, 14}, Parser.parseTaskRefs("delete 9, 4,12-14,13", "delete", tasks));
+        assertArrayEquals(new int[] {3, 5}, Parser.parseTaskRefs("unmark all done:1", "unmark", tasks));
+        assertEquals(28, Parser.parseTaskRefs("mark all done:0", "mark", tasks).length);
+        assertEquals(30, Parser.parseTaskRefs("delete all", "delete", tasks).length);
+        assertThrows(WalleException.class, () -> Parser.parseTaskRefs("mark 5-3", "mark", tasks));
+        assertThrows(WalleException.class, () -> Parser.parseTaskRefs("mark 1-31", "mark", tasks));
+        assertThrows(WalleException.class, () -> Parser.parseTaskRefs("mark 1,,2", "mark", tasks));
+        assertThrows(WalleException.class, () -> Parser.parseTaskRefs("mark all done:2", "mark", tasks));
+        assertThrows(WalleException.class, () -> Parser.parseTaskRefs("mark all of them", "mark", tasks));
     }
 }
@@ -0,0 +1,144 @@
+package walle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ShardedStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Task> sampleTasks() {
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(new Todo("read book"));
+        tasks.add(new Deadline("return book", LocalDateTime.of(2019, 10, 15, 18, 0)));
+        tasks.add(new Event("project meeting", LocalDateTime.of(2025, 2, 21, 14, 0),
+                LocalDateTime.of(2025, 2, 21, 16, 0)));
+        tasks.add(new Deadline("submit report", LocalDateTime.of(2025, 2, 28, 23, 59)));
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).assignId(i + 1);
+        }
+        return tasks;
+    }
+
+    @Test
+    void save_splitsByMonth_loadRestoresOrder() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        List<Task> tasks = sampleTasks();
+        storage.save(tasks);
+
+        assertTrue(Files.exists(tempDir.resolve("undated.txt")));
+        assertTrue(Files.exists(tempDir.resolve("2019-10.txt")));
+        assertEquals(2, Files.readAllLines(tempDir.resolve("2025-02.txt")).size());
+        assertEquals(tasks.toString(), new ShardedStorage(tempDir.toString()).load().toString());
+    }
+
+    @Test
+    void save_rewritesOnlyChangedShards() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        List<Task> tasks = sampleTasks();
+        storage.save(tasks);
+        Path undated = tempDir.resolve("undated.txt");
+        Path february = tempDir.resolve("2025-02.txt");
+        long before = Files.getLastModifiedTime(undated).toMillis();
+        Files.setLastModifiedTime(undated, FileTime.fromMillis(before - 10_000));
+        Files.setLastModifiedTime(february, FileTime.fromMillis(before - 10_000));
+
+        tasks.get(3).markDone();
+        storage.save(tasks);
+        assertEquals(before - 10_000, Files.getLastModifiedTime(undated).toMillis());
+        assertTrue(Files.getLastModifiedTime(february).toMillis() > before - 10_000);
+        assertTrue(new ShardedStorage(tempDir.toString()).load().get(3).isDone());
+    }
+
+    @Test
+    void mark_rewritesOnlyItsShard() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        storage.save(sampleTasks());
+        Path other = tempDir.resolve("2019-10.txt");
+        long before = Files.getLastModifiedTime(other).toMillis();
+        Files.setLastModifiedTime(other, FileTime.fromMillis(before - 10_000));
+
+        storage.appendMark(3);
+        assertEquals(before - 10_000, Files.getLastModifiedTime(other).toMillis());
+        assertTrue(new ShardedStorage(tempDir.toString()).load().get(2).isDone());
+    }
+
+    @Test
+    void deleteAndReinsert_keepsPosition() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        List<Task> tasks = sampleTasks();
+        storage.save(tasks);
+
+        storage.appendDelete(2);
+        assertFalse(Files.exists(tempDir.resolve("2019-10.txt")));
+        storage.appendInsert(2, tasks.get(1));
+        assertEquals(tasks.toString(), new ShardedStorage(tempDir.toString()).load().toString());
+    }
+
+    @Test
+    void save_afterDeleteAtFront_rewritesOnlyItsShard() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        List<Task> tasks = sampleTasks();
+        storage.save(tasks);
+        Path october = tempDir.resolve("2019-10.txt");
+        Path february = tempDir.resolve("2025-02.txt");
+        long before = Files.getLastModifiedTime(october).toMillis();
+        Files.setLastModifiedTime(october, FileTime.fromMillis(before - 10_000));
+        Files.setLastModifiedTime(february, FileTime.fromMillis(before - 10_000));
+
+        storage.save(tasks.subList(1, tasks.size()));
+        assertFalse(Files.exists(tempDir.resolve("undated.txt")));
+        assertEquals(before - 10_000, Files.getLastModifiedTime(october).toMillis());
+        assertEquals(before - 10_000, Files.getLastModifiedTime(february).toMillis());
+        assertEquals(tasks.subList(1, tasks.size()).toString(),
+                new ShardedStorage(tempDir.toString()).load().toString());
+    }
+
+    @Test
+    void mark_doesNotPickUpChangesToSavedTaskObjects() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        List<Task> tasks = sampleTasks();
+        storage.save(tasks);
+
+        tasks.get(3).markDone();
+        storage.appendMark(3);
+        List<Task> loaded = new ShardedStorage(tempDir.toString()).load();
+        assertTrue(loaded.get(2).isDone());
+        assertFalse(loaded.get(3).isDone());
+    }
+
+    @Test
+    void loadShard_readsOneMonthInListOrder() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        storage.save(sampleTasks());
+
+        List<Task> february = new ShardedStorage(tempDir.toString()).loadShard(YearMonth.of(2025, 2));
+        assertEquals(2, february.size());
+        assertEquals("project meeting", february.get(0).getDescription());
+        assertEquals("submit report", february.get(1).getDescription());
+        assertTrue(new ShardedStorage(tempDir.toString()).loadShard(YearMonth.of(2020, 1)).isEmpty());
+    }
+
+    @Test
+    void idHighWater_keptAfterHighestTaskDeleted() throws Exception {
+        ShardedStorage storage = new ShardedStorage(tempDir.toString());
+        storage.save(sampleTasks());
+        assertFalse(Files.exists(tempDir.resolve("max-id")));
+
+        storage.appendDelete(4);
+        ShardedStorage reopened = new ShardedStorage(tempDir.toString());
+        assertEquals(3, reopened.load().size());
+        assertEquals(4, reopened.getIdHighWater());
+    }
+}
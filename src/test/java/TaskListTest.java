@@ -0,0 +1,519 @@
+package walle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TaskListTest {
+
+    @Test
+    void add_assignsStableIds() {
+        TaskList tasks = new TaskList();
+        Task first = tasks.addTodo("read book");
+        Task second = tasks.addTodo("testing");
+        Task third = tasks.addTodo("sleep");
+
+        assertEquals(1, first.getId());
+        assertEquals("#3", third.getIdTag());
+        tasks.delete(1);
+        assertSame(second, tasks.getById(2));
+        assertEquals(2, tasks.indexOfId(3));
+        assertEquals(-1, tasks.indexOfId(1));
+    }
+
+    @Test
+    void loadedIds_keptAndDuplicatesReassigned() {
+        ArrayList<Task> loaded = new ArrayList<>();
+        Task a = new Todo("a");
+        a.assignId(0x1f);
+        Task b = new Todo("b");
+        b.assignId(0x1f);
+        loaded.add(a);
+        loaded.add(b);
+
+        TaskList tasks = new TaskList(loaded);
+        assertEquals(0x1f, a.getId());
+        assertEquals(0x20, b.getId());
+        assertEquals(0x21, tasks.addTodo("c").getId());
+    }
+
+    @Test
+    void loadedIds_outOfRangeRenumbered() {
+        Task a = new Todo("a");
+        a.assignId(1 << 27);
+        Task b = new Todo("b");
+        b.assignId(3);
+
+        TaskList tasks = new TaskList(List.of(a, b));
+        assertTrue(tasks.hasReassignedIds());
+        assertEquals(1, a.getId());
+        assertEquals(1, tasks.indexOfId(1));
+        assertEquals(4, tasks.addTodo("c").getId());
+        assertFalse(new TaskList(List.of(b)).hasReassignedIds());
+    }
+
+    @Test
+    void loadedIds_newIdsStartAboveHighWater() {
+        Task a = new Todo("a");
+        a.assignId(2);
+
+        assertEquals(6, new TaskList(List.of(a), TaskList.Backing.ARRAY, 5).addTodo("b").getId());
+        Task c = new Todo("c");
+        c.assignId(2);
+        assertEquals(3, new TaskList(List.of(c), TaskList.Backing.ARRAY, 1 << 27).addTodo("d").getId());
+    }
+
+    @Test
+    void parseTaskRefs_byId_resolvesPosition() throws Exception {
+        TaskList tasks = new TaskList();
+        for (int i = 0; i < 20; i++) {
+            tasks.addTodo("task " + i);
+        }
+        tasks.delete(1);
+
+        assertArrayEquals(new int[] {15}, Parser.parseTaskRefs("mark #10", "mark", tasks));
+        assertThrows(WalleException.class, () -> Parser.parseTaskRefs("mark #1", "mark", tasks));
+        assertThrows(WalleException.class, () -> Parser.parseTaskRefs("mark #zz", "mark", tasks));
+    }
+
+    @Test
+    void treeBacking_matchesArrayBacking() {
+        TaskList array = new TaskList();
+        TaskList tree = new TaskList(TaskList.Backing.TREE);
+        Random random = new Random(42);
+
+        for (int step = 0; step < 5000; step++) {
+            int op = random.nextInt(4);
+            if (op == 0 || array.isEmpty()) {
+                int idx = 1 + random.nextInt(array.size() + 1);
+                array.addAt(idx, new Todo("task " + step));
+                tree.addAt(idx, new Todo("task " + step));
+            } else if (op == 1) {
+                array.addTodo("task " + step);
+                tree.addTodo("task " + step);
+            } else if (op == 2) {
+                int idx = 1 + random.nextInt(array.size());
+                assertEquals(array.delete(idx).getId(), tree.delete(idx).getId());
+            } else {
+                int idx = 1 + random.nextInt(array.size());
+                assertEquals(array.mark(idx).toString(), tree.mark(idx).toString());
+            }
+        }
+
+        assertEquals(array.size(), tree.size());
+        assertEquals(array.toDisplayString(), tree.toDisplayString());
+        for (int i = 1; i <= array.size(); i++) {
+            int id = array.get(i).getId();
+            assertEquals(id, tree.get(i).getId());
+            assertEquals(i, tree.indexOfId(id));
+        }
+    }
+
+    @Test
+    void treeBacking_iteratesInOrder() {
+        List<Task> loaded = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            loaded.add(new Todo("task " + i));
+        }
+        TaskList tasks = new TaskList(loaded, TaskList.Backing.TREE);
+        tasks.addAt(1, new Todo("first"));
+
+        int i = 0;
+        for (Task t : tasks.getTasks()) {
+            assertEquals(i == 0 ? "first" : "task " + (i - 1), t.getDescription());
+            i++;
+        }
+        assertEquals(101, i);
+    }
+
+    @Test
+    void findWords_indexAndScanAgree() {
+        TaskList tree = new TaskList(TaskList.Backing.TREE);
+        TaskList array = new TaskList();
+        for (TaskList tasks : new TaskList[] {tree, array}) {
+            tasks.addTodo("Team meeting");
+            tasks.addTodo("meetings recap");
+            tasks.addTodo("prepare team meeting notes");
+            tasks.addAt(1, new Todo("MEETING, team!"));
+            tasks.delete(3);
+        }
+
+        String expected = "Here are the matching tasks in your list:\n"
+                + "1. #4 [T][ ] MEETING, team!\n"
+                + "2. #1 [T][ ] Team meeting\n"
+                + "3. #3 [T][ ] prepare team meeting notes";
+        assertEquals(expected, tree.findWordsToDisplayString("team meeting"));
+        assertEquals(expected, array.findWordsToDisplayString("team meeting"));
+        tree.setWordIndexEnabled(false);
+        assertEquals(expected, tree.findWordsToDisplayString("team meeting"));
+        tree.setWordIndexEnabled(true);
+        assertEquals(expected, tree.findWordsToDisplayString("Team  Meeting"));
+
+        assertEquals("Here are the matching tasks in your list:\n(no matching tasks found)",
+                tree.findWordsToDisplayString("recap"));
+    }
+
+    @Test
+    void find_trigramIndexMatchesScan() {
+        TaskList indexed = new TaskList(TaskList.Backing.TREE);
+        TaskList scanned = new TaskList(TaskList.Backing.TREE);
+        scanned.setSubstringIndexEnabled(false);
+        Random random = new Random(7);
+        String[] words = {"read", "book", "Team", "meeting", "return", "CS2103", "sleep"};
+
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(5);
+            if (op <= 1 || indexed.isEmpty()) {
+                String desc = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                LocalDateTime by = LocalDateTime.of(2019, 1 + random.nextInt(12), 15, 18, 0);
+                indexed.add(op == 0 ? new Todo(desc) : new Deadline(desc, by));
+                scanned.add(op == 0 ? new Todo(desc) : new Deadline(desc, by));
+            } else if (op == 2) {
+                int idx = 1 + random.nextInt(indexed.size());
+                indexed.delete(idx);
+                scanned.delete(idx);
+            } else {
+                int idx = 1 + random.nextInt(indexed.size());
+                if (op == 3) {
+                    indexed.mark(idx);
+                    scanned.mark(idx);
+                } else {
+                    indexed.unmark(idx);
+                    scanned.unmark(idx);
+                }
+            }
+        }
+
+        for (String keyword : new String[] {"[x]", "[d][ ]", "ook", "team meet", "oct 15", "2019 18", "zzz", "me"}) {
+            assertEquals(scanned.findToDisplayString(keyword), indexed.findToDisplayString(keyword));
+        }
+    }
+
+    @Test
+    void eventIntervalTree_matchesScan() {
+        EventIntervalTree tree = new EventIntervalTree();
+        List<Event> all = new ArrayList<>();
+        Random random = new Random(3);
+        LocalDateTime base = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+        for (int i = 1; i <= 2000; i++) {
+            LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 28));
+            Event e = new Event("event " + i, from, from.plusMinutes(random.nextInt(600)));
+            e.assignId(i);
+            tree.add(e);
+            all.add(e);
+            if (random.nextInt(4) == 0) {
+                Event gone = all.remove(random.nextInt(all.size()));
+                tree.remove(gone);
+            }
+        }
+
+        assertEquals(all.size(), tree.size());
+        for (int q = 0; q < 200; q++) {
+            LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 28));
+            LocalDateTime to = from.plusMinutes(random.nextInt(300));
+            List<Event> expected = new ArrayList<>();
+            for (Event e : all) {
+                boolean startsInside = !e.getFrom().isBefore(from)
+                        && (e.getFrom().isBefore(to) || from.equals(to) && e.getFrom().equals(to));
+                if (startsInside || e.getFrom().isBefore(from) && e.getTo().isAfter(from)) {
+                    expected.add(e);
+                }
+            }
+            expected.sort((a, b) -> a.getFrom().equals(b.getFrom())
+                    ? Integer.compare(a.getId(), b.getId()) : a.getFrom().compareTo(b.getFrom()));
+            assertEquals(expected, tree.overlapping(from, to));
+        }
+    }
+
+    @Test
+    void eventIntervalTree_pointQuery_findsEventsUnderWay() {
+        EventIntervalTree tree = new EventIntervalTree();
+        LocalDateTime two = LocalDateTime.of(2025, 2, 21, 14, 0);
+        Event meeting = new Event("meeting", two, two.plusHours(2));
+        meeting.assignId(1);
+        Event call = new Event("call", two.plusHours(1), two.plusHours(1));
+        call.assignId(2);
+        Event lunch = new Event("lunch", two.minusHours(2), two);
+        lunch.assignId(3);
+        for (Event e : List.of(meeting, call, lunch)) {
+            tree.add(e);
+        }
+
+        assertEquals(List.of(meeting), tree.overlapping(two, two));
+        assertEquals(List.of(meeting, call), tree.overlapping(two.plusHours(1), two.plusHours(1)));
+        assertEquals(List.of(meeting), tree.overlapping(two.plusMinutes(30), two.plusMinutes(30)));
+        assertEquals(List.of(), tree.overlapping(two.plusHours(2), two.plusHours(2)));
+    }
+
+    @Test
+    void compactBacking_matchesArrayBacking() {
+        TaskList array = new TaskList();
+        TaskList compact = new TaskList(TaskList.Backing.COMPACT);
+        Random random = new Random(11);
+        LocalDateTime base = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+        for (int step = 0; step < 3000; step++) {
+            int op = random.nextInt(6);
+            if (op <= 2 || array.isEmpty()) {
+                LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 28));
+                String desc = "task " + step + (step % 7 == 0 ? " café ☕" : "");
+                int idx = 1 + random.nextInt(array.size() + 1);
+                for (TaskList tasks : new TaskList[] {array, compact}) {
+                    Task t = op == 0 ? new Todo(desc)
+                            : op == 1 ? new Deadline(desc, from)
+                            : new Event(desc, from, from.plusMinutes(90));
+                    tasks.addAt(idx, t);
+                }
+            } else if (op == 3) {
+                int idx = 1 + random.nextInt(array.size());
+                assertEquals(array.delete(idx).toString(), compact.delete(idx).toString());
+            } else {
+                int idx = 1 + random.nextInt(array.size());
+                Task marked = op == 4 ? compact.mark(idx) : compact.unmark(idx);
+                assertEquals(op == 4 ? array.mark(idx).toString() : array.unmark(idx).toString(), marked.toString());
+            }
+        }
+
+        assertEquals(array.toDisplayString(), compact.toDisplayString());
+        assertEquals(array.findToDisplayString("café"), compact.findToDisplayString("café"));
+        assertEquals(array.findWordsToDisplayString("task 21"), compact.findWordsToDisplayString("task 21"));
+        LocalDate day = LocalDate.of(2025, 2, 14);
+        assertEquals(array.onToDisplayString(day), compact.onToDisplayString(day));
+        assertEquals(array.freeToDisplayString(day), compact.freeToDisplayString(day));
+        assertEquals(array.dueToDisplayString(day, false), compact.dueToDisplayString(day, false));
+        Task last = array.get(array.size());
+        assertEquals(array.size(), compact.indexOfId(last.getId()));
+        assertEquals(last.toString(), compact.getById(last.getId()).toString());
+    }
+
+    @Test
+    void compactBacking_returnsDetachedCopies() {
+        TaskList tasks = new TaskList(TaskList.Backing.COMPACT);
+        tasks.add(new Deadline("return book", LocalDateTime.of(2019, 10, 15, 18, 0)));
+
+        tasks.get(1).markDone();
+        assertEquals("[D][ ] return book (by: Oct 15 2019 18:00)", tasks.get(1).toString());
+        tasks.mark(1);
+        assertEquals("[D][X] return book (by: Oct 15 2019 18:00)", tasks.get(1).toString());
+        assertEquals(1, tasks.get(1).getId());
+    }
+
+    @Test
+    void concurrentTaskList_snapshotsAreIsolated() {
+        ConcurrentTaskList tasks = new ConcurrentTaskList(TaskList.Backing.TREE);
+        tasks.addTodo("read book");
+        ConcurrentTaskList.Snapshot before = tasks.snapshot();
+
+        tasks.mark(1);
+        tasks.addTodo("sleep");
+        assertEquals(1, before.getVersion());
+        assertEquals("1. #1 [T][ ] read book", before.toDisplayString().split("\n")[1]);
+        assertEquals(3, tasks.snapshot().getVersion());
+        assertEquals("[[T][X] read book, [T][ ] sleep]", tasks.getTasks().toString());
+        assertThrows(UnsupportedOperationException.class, () -> tasks.getTasks().remove(0));
+    }
+
+    @Test
+    void concurrentTaskList_readersNeverSeeHalfAppliedChanges() throws Exception {
+        ConcurrentTaskList tasks = new ConcurrentTaskList(TaskList.Backing.TREE);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                tasks.addTodo("task " + i);
+                tasks.mark(tasks.size());
+            }
+        });
+        writer.start();
+
+        boolean isConsistent = true;
+        while (writer.isAlive()) {
+            ConcurrentTaskList.Snapshot snapshot = tasks.snapshot();
+            List<Task> seen = snapshot.getTasks();
+            // Each task takes two changes: added, then marked.
+            isConsistent &= seen.size() == (snapshot.getVersion() + 1) / 2;
+            for (int i = 0; i < seen.size() - 1; i++) {
+                isConsistent &= seen.get(i).isDone();
+            }
+        }
+        writer.join();
+        assertTrue(isConsistent);
+        assertEquals(2000, tasks.countDone());
+    }
+
+    @Test
+    void concurrentTaskList_chunkedSnapshotsMatchLiveList() {
+        ConcurrentTaskList tasks = new ConcurrentTaskList(TaskList.Backing.ARRAY);
+        TaskList expected = new TaskList();
+        Random random = new Random(17);
+        for (int i = 0; i < 3000; i++) {
+            int op = random.nextInt(10);
+            if (op < 6 || expected.size() == 0) {
+                int idx = 1 + random.nextInt(expected.size() + 1);
+                tasks.addAt(idx, new Todo("task " + i));
+                expected.addAt(idx, new Todo("task " + i));
+            } else if (op < 8) {
+                int idx = 1 + random.nextInt(expected.size());
+                tasks.delete(idx);
+                expected.delete(idx);
+            } else {
+                int idx = 1 + random.nextInt(expected.size());
+                tasks.mark(idx);
+                expected.mark(idx);
+            }
+        }
+        ConcurrentTaskList.Snapshot before = tasks.snapshot();
+        String beforeText = before.getTasks().toString();
+        int[] doomed = {1, 2, 600, 601, 602, tasks.size()};
+        tasks.deleteAll(doomed);
+        tasks.setDone(new int[] {1, 300, tasks.size()}, true);
+
+        assertEquals(beforeText, before.getTasks().toString());
+        expected.deleteAll(doomed);
+        expected.setDone(new int[] {1, 300, expected.size()}, true);
+        assertEquals(expected.getTasks().toString(), tasks.getTasks().toString());
+        assertEquals(expected.get(777).toString(), tasks.get(777).toString());
+    }
+
+    @Test
+    void find_largeListScansInParallelInListOrder() {
+        int size = TaskList.PARALLEL_SCAN_THRESHOLD + 1000;
+        List<Task> loaded = new ArrayList<>();
+        StringBuilder expected = new StringBuilder("Here are the matching tasks in your list:\n");
+        for (int i = 1; i <= size; i++) {
+            String desc = i % 997 == 0 ? "Needle " + i : "hay " + i;
+            loaded.add(new Todo(desc));
+            if (i % 997 == 0) {
+                expected.append(i).append(". #").append(Integer.toHexString(i))
+                        .append(" [T][ ] ").append(desc).append("\n");
+            }
+        }
+
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            TaskList tasks = new TaskList(loaded, backing);
+            tasks.setSubstringIndexEnabled(false);
+            tasks.setWordIndexEnabled(false);
+            assertEquals(expected.toString().trim(), tasks.findToDisplayString("needle"), backing.name());
+            assertEquals(expected.toString().trim(), tasks.findWordsToDisplayString("NEEDLE"), backing.name());
+        }
+    }
+
+    @Test
+    void toDisplayString_reusedUntilListChanges() {
+        TaskList tasks = new TaskList(TaskList.Backing.TREE);
+        tasks.addTodo("read book");
+        String first = tasks.toDisplayString();
+        assertSame(first, tasks.toDisplayString());
+
+        tasks.mark(1);
+        assertEquals("These are all your tasks:\n1. #1 [T][X] read book", tasks.toDisplayString());
+        long version = tasks.getVersion();
+        tasks.mark(1);
+        assertEquals(version, tasks.getVersion());
+        tasks.delete(1);
+        assertEquals("(You have no task available now)", tasks.toDisplayString());
+    }
+
+    @Test
+    void pagesAndStreaming_matchFullRendering() throws Exception {
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            TaskList tasks = new TaskList(backing);
+            for (int i = 1; i <= 500; i++) {
+                tasks.addTodo("task number " + i);
+            }
+            String full = tasks.toDisplayString();
+            StringWriter out = new StringWriter();
+            tasks.writeDisplayTo(out);
+            assertEquals(full, out.toString());
+
+            String[] lines = full.split("\n");
+            String page = tasks.pageToDisplayString(200, 50);
+            String[] pageLines = page.split("\n");
+            assertEquals("These are your tasks 201-250 of 500:", pageLines[0]);
+            assertEquals(51, pageLines.length);
+            for (int i = 1; i <= 50; i++) {
+                assertEquals(lines[200 + i], pageLines[i]);
+            }
+            assertTrue(tasks.pageToDisplayString(480, 50).startsWith("These are your tasks 481-500 of 500:"));
+            assertEquals("(There are only 500 tasks, so that page is empty)", tasks.pageToDisplayString(500, 50));
+        }
+        assertEquals("(You have no task available now)", new TaskList().pageToDisplayString(0, 50));
+    }
+
+    @Test
+    void bulkOperations_matchSingleOperations() {
+        int[] doomed = {1, 4, 5, 6, 20, 39, 40};
+        List<TaskList> lists = new ArrayList<>();
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            lists.add(new TaskList(backing));
+            lists.add(new ConcurrentTaskList(backing));
+        }
+        TaskList expected = new TaskList(TaskList.Backing.ARRAY);
+        lists.add(expected);
+        for (TaskList tasks : lists) {
+            for (int i = 1; i <= 40; i++) {
+                tasks.add(i % 3 == 0 ? new Deadline("due " + i, LocalDateTime.of(2025, 1, 1, 0, 0).plusDays(i))
+                        : new Todo("task " + i));
+            }
+        }
+        for (int i = doomed.length - 1; i >= 0; i--) {
+            expected.delete(doomed[i]);
+        }
+        expected.mark(2);
+        expected.mark(3);
+        expected.mark(10);
+
+        for (TaskList tasks : lists.subList(0, lists.size() - 1)) {
+            List<Task> removed = tasks.deleteAll(doomed);
+            assertEquals(doomed.length, removed.size());
+            assertEquals("[T][ ] task 1", removed.get(0).toString());
+            assertEquals("[T][ ] task 40", removed.get(doomed.length - 1).toString());
+            assertEquals(2, tasks.setDone(new int[] {2, 3}, true).size());
+            assertEquals(1, tasks.setDone(new int[] {2, 10}, true).size());
+            assertEquals(expected.toDisplayString(), tasks.toDisplayString());
+            assertEquals(expected.statusToDisplayString(true), tasks.statusToDisplayString(true));
+            assertEquals(expected.findToDisplayString("due"), tasks.findToDisplayString("due"));
+            assertArrayEquals(new int[] {2, 3, 10}, tasks.positionsWithStatus(true));
+            assertEquals(30, tasks.positionsWithStatus(false).length);
+            assertEquals(-1, tasks.indexOfId(removed.get(3).getId()));
+        }
+    }
+
+    @Test
+    void find_arrayBacking_visitsOnlyTheHits() {
+        ArrayList<Task> loaded = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            loaded.add(new IdCountingTodo("task " + i));
+        }
+        Task milk = new IdCountingTodo("buy milk");
+        loaded.add(5_000, milk);
+        TaskList tasks = new TaskList(loaded);
+        tasks.delete(1);
+
+        IdCountingTodo.reads = 0;
+        String found = tasks.findToDisplayString("milk");
+        assertTrue(found.endsWith("\n5000. " + milk.getIdTag() + " [T][ ] buy milk"), found);
+        assertTrue(IdCountingTodo.reads < 100, "read " + IdCountingTodo.reads + " IDs");
+    }
+
+    /** Counts reads of task IDs, which every pass over the list makes. */
+    private static class IdCountingTodo extends Todo {
+        static int reads;
+
+        IdCountingTodo(String description) {
+            super(description);
+        }
+
+        @Override
+        public int getId() {
+            reads++;
+            return super.getId();
+        }
+    }
+}
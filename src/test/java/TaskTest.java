@@ -2,6 +2,8 @@ package walle;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.LocalDateTime;
+
 import org.junit.jupiter.api.Test;
 
 public class TaskTest {
@@ -24,4 +26,19 @@ public class TaskTest {
         assertFalse(t.isDone());
         assertTrue(t.toString().startsWith("[ ]"));
     }
+
+    @Test
+    void rendering_cachedUntilStatusChanges() {
+        Deadline d = new Deadline("Return Book", LocalDateTime.of(2019, 10, 15, 18, 0));
+        String first = d.toString();
+        assertSame(first, d.toString());
+        assertEquals("[d][ ] return book (by: oct 15 2019 18:00)", d.toLowerCaseString());
+
+        d.markDone();
+        assertEquals("[D][X] Return Book (by: Oct 15 2019 18:00)", d.toString());
+        assertEquals("[d][x] return book (by: oct 15 2019 18:00)", d.toLowerCaseString());
+        String done = d.toString();
+        d.markDone();
+        assertSame(done, d.toString());
+    }
 }
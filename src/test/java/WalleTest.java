@@ -0,0 +1,491 @@
+package walle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WalleTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mutations_reachStorage() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        Walle walle = new Walle(storage);
+        walle.getResponse("todo read book");
+        walle.getResponse("deadline return book /by 2019-10-15 1800");
+        walle.getResponse("mark 2");
+        walle.getResponse("delete 1");
+
+        assertEquals(1, storage.load().size());
+        assertEquals("[D][X] return book (by: Oct 15 2019 18:00)", storage.load().get(0).toString());
+    }
+
+    @Test
+    void load_outOfRangeId_renumberedAndSaved() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Files.write(savePath, List.of("#8000000 | T | 0 | read book"));
+
+        new Walle(new FileStorage(savePath.toString()));
+        assertEquals(List.of("#max-id 1", "#1 | T | 0 | read book"), Files.readAllLines(savePath));
+    }
+
+    @Test
+    void undo_revertsStoredState() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        Walle walle = new Walle(storage);
+        walle.getResponse("todo read book");
+        walle.getResponse("todo testing");
+        walle.getResponse("delete 1");
+        walle.getResponse("undo");
+
+        assertEquals("[[T][ ] read book, [T][ ] testing]", storage.load().toString());
+    }
+
+    @Test
+    void eventQueries_useEventTimes() {
+        Walle walle = new Walle(new InMemoryStorage());
+        walle.getResponse("todo read book");
+        walle.getResponse("event standup /from 2025-02-21 0900 /to 2025-02-21 0930");
+        walle.getResponse("event review /from 2025-02-21 1400 /to 2025-02-21 1600");
+        walle.getResponse("event trip /from 2025-02-20 2000 /to 2025-02-21 0800");
+
+        assertEquals("Here are the events from Feb 21 2025 15:00 to Feb 21 2025 17:00:\n"
+                + "3. #3 [E][ ] review (from: Feb 21 2025 14:00 to: Feb 21 2025 16:00)",
+                walle.getResponse("overlaps 2025-02-21 1500 2025-02-21 1700"));
+        assertEquals("Nothing is scheduled from Feb 21 2025 16:00 to Feb 21 2025 17:00.",
+                walle.getResponse("overlaps 2025-02-21 1600 2025-02-21 1700"));
+        assertEquals("Here are your events on Feb 21 2025:\n"
+                + "4. #4 [E][ ] trip (from: Feb 20 2025 20:00 to: Feb 21 2025 08:00)\n"
+                + "2. #2 [E][ ] standup (from: Feb 21 2025 09:00 to: Feb 21 2025 09:30)\n"
+                + "3. #3 [E][ ] review (from: Feb 21 2025 14:00 to: Feb 21 2025 16:00)",
+                walle.getResponse("on 2025-02-21"));
+        assertEquals("Here are your free slots on Feb 21 2025:\n"
+                + "08:00 - 09:00\n09:30 - 14:00\n16:00 - 24:00",
+                walle.getResponse("free 2025-02-21"));
+
+        walle.getResponse("delete 3");
+        assertEquals("Here are your free slots on Feb 21 2025:\n08:00 - 09:00\n09:30 - 24:00",
+                walle.getResponse("free 2025-02-21"));
+        assertEquals("Oops — use yyyy-MM-dd (e.g., on 2019-10-15).", walle.getResponse("on tomorrow"));
+    }
+
+    @Test
+    void deadlineQueries_followDueTimes() {
+        Walle walle = new Walle(new InMemoryStorage());
+        walle.getResponse("deadline essay /by 2999-03-01 1200");
+        walle.getResponse("deadline taxes /by 2000-04-15 2359");
+        walle.getResponse("deadline slides /by 2999-02-20 0900");
+        walle.getResponse("deadline report /by 2000-01-10 1000");
+        walle.getResponse("todo read book");
+        walle.getResponse("mark 4");
+
+        assertEquals("Here are the deadlines due by Apr 15 2000:\n"
+                + "4. #4 [D][X] report (by: Jan 10 2000 10:00)\n"
+                + "2. #2 [D][ ] taxes (by: Apr 15 2000 23:59)",
+                walle.getResponse("due 2000-04-15"));
+        assertEquals("Here are the deadlines due by Apr 15 2000:\n"
+                + "4. #4 [D][X] report (by: Jan 10 2000 10:00)",
+                walle.getResponse("due 2000-04-15 done:1"));
+        assertEquals("Here are your upcoming deadlines:\n"
+                + "3. #3 [D][ ] slides (by: Feb 20 2999 09:00)",
+                walle.getResponse("upcoming 1"));
+        assertEquals("Here are your overdue deadlines:\n"
+                + "2. #2 [D][ ] taxes (by: Apr 15 2000 23:59)",
+                walle.getResponse("overdue"));
+
+        walle.getResponse("mark 2");
+        assertEquals("You have no overdue deadlines.", walle.getResponse("overdue"));
+        walle.getResponse("delete 3");
+        assertEquals("Here are your upcoming deadlines:\n"
+                + "1. #1 [D][ ] essay (by: Mar 01 2999 12:00)",
+                walle.getResponse("upcoming 5 done:0"));
+        assertEquals("Oops — the status filter should be done:0 or done:1.", walle.getResponse("overdue done:2"));
+    }
+
+    @Test
+    void statusQueries_followMarks() {
+        for (TaskList.Backing backing : TaskList.Backing.values()) {
+            Walle walle = new Walle(new InMemoryStorage(), backing);
+            walle.getResponse("todo read book");
+            walle.getResponse("deadline return book /by 2019-10-15 1800");
+            walle.getResponse("event party /from 2019-10-16 1800 /to 2019-10-16 2200");
+            walle.getResponse("todo sleep");
+            walle.getResponse("mark 2");
+            walle.getResponse("mark 4");
+            walle.getResponse("unmark 4");
+            walle.getResponse("mark 1");
+            walle.getResponse("delete 1");
+
+            assertEquals("These are your done tasks:\n"
+                    + "1. #2 [D][X] return book (by: Oct 15 2019 18:00)",
+                    walle.getResponse("list done"), backing.name());
+            assertEquals("These are your pending tasks:\n"
+                    + "2. #3 [E][ ] party (from: Oct 16 2019 18:00 to: Oct 16 2019 22:00)\n"
+                    + "3. #4 [T][ ] sleep",
+                    walle.getResponse("list pending"), backing.name());
+            assertEquals("You have 3 tasks: 1 done, 2 pending.\n"
+                    + "Todos: 1 (0 done)\nDeadlines: 1 (1 done)\nEvents: 1 (0 done)",
+                    walle.getResponse("count"), backing.name());
+        }
+    }
+
+    @Test
+    void commands_dispatchedByFirstWord() {
+        Walle walle = new Walle(new InMemoryStorage());
+        assertEquals("Got it. I've added this task:\n  [T][ ] read book\nNow you have 1 tasks in the list.",
+                walle.getResponse("todo read book"));
+        assertEquals("Nice! I've marked this task as done:\n  [T][X] read book", walle.getResponse("MARK 1"));
+        assertEquals("These are your done tasks:\n1. #1 [T][X] read book", walle.getResponse("list done"));
+        assertEquals("These are your tasks 1-1 of 1:\n1. #1 [T][X] read book", walle.getResponse("list page 1"));
+        assertEquals("I don't recognise that command. Type 'help' to see commands.", walle.getResponse("lists"));
+        assertEquals("I don't recognise that command. Type 'help' to see commands.", walle.getResponse("list all"));
+        assertEquals("I don't recognise that command. Type 'help' to see commands.", walle.getResponse(""));
+        assertFalse(walle.isExit());
+        walle.getResponse("bye");
+        assertTrue(walle.isExit());
+    }
+
+    @Test
+    void bulkCommands_oneUndoEntryEach() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        Walle walle = new Walle(storage);
+        for (int i = 1; i <= 6; i++) {
+            walle.getResponse("todo task " + i);
+        }
+        assertEquals("Nice! I've marked 3 tasks as done.", walle.getResponse("mark 2-4"));
+        assertEquals("Noted. I've removed 2 tasks.\nNow you have 4 tasks in the list.",
+                walle.getResponse("delete 1,3"));
+        assertEquals("[[T][X] task 2, [T][X] task 4, [T][ ] task 5, [T][ ] task 6]", storage.load().toString());
+
+        assertEquals("Nice! I've marked 2 tasks as done.", walle.getResponse("mark all done:0"));
+        assertEquals("Oops — no tasks match that, so nothing was deleted.", walle.getResponse("delete all done:0"));
+        walle.getResponse("undo");
+        walle.getResponse("undo");
+        assertEquals("[[T][ ] task 1, [T][X] task 2, [T][X] task 3, [T][X] task 4, [T][ ] task 5, [T][ ] task 6]",
+                storage.load().toString());
+        walle.getResponse("undo");
+        assertEquals("[[T][ ] task 1, [T][ ] task 2, [T][ ] task 3, [T][ ] task 4, [T][ ] task 5, [T][ ] task 6]",
+                storage.load().toString());
+    }
+
+    @Test
+    void bulkMark_journalsAndUndoesOnlyTasksThatChanged() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Walle walle = new Walle(new FileStorage(savePath.toString()));
+        for (int i = 1; i <= 4; i++) {
+            walle.getResponse("todo task " + i);
+        }
+        walle.getResponse("mark 2");
+        assertEquals("Nice! I've marked 4 tasks as done.", walle.getResponse("mark 1-4"));
+
+        List<String> journal = Files.readAllLines(tempDir.resolve("walle.txt.journal"));
+        assertEquals(List.of("mark 2", "mark 1", "mark 3", "mark 4"),
+                journal.subList(journal.size() - 4, journal.size()));
+
+        walle.getResponse("undo");
+        assertEquals("[[T][ ] task 1, [T][X] task 2, [T][ ] task 3, [T][ ] task 4]",
+                new FileStorage(savePath.toString()).load().toString());
+    }
+
+    @Test
+    void ids_notReusedAfterRestart() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Walle walle = new Walle(new FileStorage(savePath.toString()));
+        walle.getResponse("todo a");
+        walle.getResponse("todo b");
+        walle.getResponse("todo c");
+        walle.getResponse("delete 3");
+        walle.getResponse("bye");
+        FileStorage storage = new FileStorage(savePath.toString());
+        storage.save(storage.load());
+
+        Walle restarted = new Walle(new FileStorage(savePath.toString()));
+        restarted.getResponse("todo d");
+        assertTrue(restarted.getResponse("list").endsWith("3. #4 [T][ ] d"));
+    }
+
+    @Test
+    void bulkCommands_journalOneRecordPerTask() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        Walle walle = new Walle(new FileStorage(savePath.toString()));
+        for (int i = 1; i <= 5; i++) {
+            walle.getResponse("todo task " + i);
+        }
+        walle.getResponse("mark 1,3,5");
+        walle.getResponse("delete 2-4");
+
+        List<String> journal = Files.readAllLines(tempDir.resolve("walle.txt.journal"));
+        assertEquals(List.of("mark 1", "mark 3", "mark 5", "delete 4", "delete 3", "delete 2"),
+                journal.subList(journal.size() - 6, journal.size()));
+        assertEquals("[[T][X] task 1, [T][X] task 5]", new FileStorage(savePath.toString()).load().toString());
+
+        walle.getResponse("undo");
+        walle.getResponse("undo");
+        assertEquals("[[T][ ] task 1, [T][ ] task 2, [T][ ] task 3, [T][ ] task 4, [T][ ] task 5]",
+                new FileStorage(savePath.toString()).load().toString());
+    }
+
+    /** Counts the writes that reach the backend. */
+    private static final class CountingStorage extends InMemoryStorage {
+        private int saves;
+        private int appends;
+        private int batches;
+
+        @Override
+        public void save(List<Task> tasks) {
+            saves++;
+            super.save(tasks);
+        }
+
+        @Override
+        public void appendAdd(Task t) {
+            appends++;
+            super.appendAdd(t);
+        }
+
+        @Override
+        public void appendInsert(int idx1Based, Task t) {
+            appends++;
+            super.appendInsert(idx1Based, t);
+        }
+
+        @Override
+        public void appendDelete(int idx1Based) {
+            appends++;
+            super.appendDelete(idx1Based);
+        }
+
+        @Override
+        public void appendMark(int idx1Based) {
+            appends++;
+            super.appendMark(idx1Based);
+        }
+
+        @Override
+        public void appendUnmark(int idx1Based) {
+            appends++;
+            super.appendUnmark(idx1Based);
+        }
+
+        @Override
+        public void endBatch() {
+            batches++;
+        }
+    }
+
+    @Test
+    void transactions_persistOnceAndUndoAsOne() throws Exception {
+        CountingStorage storage = new CountingStorage();
+        Walle walle = new Walle(storage);
+        walle.getResponse("todo keep");
+        assertEquals(1, storage.appends);
+
+        walle.getResponse("begin");
+        walle.getResponse("todo read book");
+        walle.getResponse("todo write essay");
+        walle.getResponse("mark 2");
+        assertEquals("[[T][ ] keep]", storage.load().toString());
+        assertEquals("Oops — a transaction is already open. Use commit or rollback first.",
+                walle.getResponse("begin"));
+        assertEquals("Committed 3 changes.", walle.getResponse("commit"));
+        assertEquals(0, storage.saves);
+        assertEquals(4, storage.appends);
+        assertEquals(1, storage.batches);
+        assertEquals("[[T][ ] keep, [T][X] read book, [T][ ] write essay]", storage.load().toString());
+
+        assertEquals("Undid 3 changes made together.", walle.getResponse("undo"));
+        assertEquals(7, storage.appends);
+        assertEquals(2, storage.batches);
+        assertEquals("[[T][ ] keep]", storage.load().toString());
+
+        walle.getResponse("begin");
+        assertEquals("Oops — only changes made since begin can be undone until you commit or roll back.",
+                walle.getResponse("undo"));
+        walle.getResponse("delete 1");
+        walle.getResponse("todo scratch");
+        assertEquals("Undid add. Removed this task:\n  [T][ ] scratch", walle.getResponse("undo"));
+        assertEquals("Rolled back 1 changes.", walle.getResponse("rollback"));
+        assertEquals("These are all your tasks:\n1. #1 [T][ ] keep", walle.getResponse("list"));
+        assertEquals(7, storage.appends);
+        assertEquals(0, storage.saves);
+        assertEquals("Oops — there is no open transaction to commit. Use begin first.", walle.getResponse("commit"));
+    }
+
+    @Test
+    void commit_onFileStorage_journalsChangesAndKeepsSnapshot() throws Exception {
+        Path savePath = tempDir.resolve("walle.txt");
+        new Walle(new FileStorage(savePath.toString())).getResponse("todo keep");
+        FileStorage storage = new FileStorage(savePath.toString());
+        storage.save(storage.load());
+        byte[] snapshot = Files.readAllBytes(savePath);
+
+        Walle walle = new Walle(new FileStorage(savePath.toString()));
+        walle.getResponse("begin");
+        walle.getResponse("todo read book");
+        walle.getResponse("mark 2");
+        assertEquals("Committed 2 changes.", walle.getResponse("commit"));
+
+        assertArrayEquals(snapshot, Files.readAllBytes(savePath));
+        List<String> journal = Files.readAllLines(tempDir.resolve("walle.txt.journal"));
+        assertEquals(List.of("add #2 | T | 0 | read book", "mark 2"),
+                journal.subList(journal.size() - 2, journal.size()));
+        assertEquals("[[T][ ] keep, [T][X] read book]", new FileStorage(savePath.toString()).load().toString());
+    }
+
+    @Test
+    void pipelines_allOrNothing() throws Exception {
+        CountingStorage storage = new CountingStorage();
+        Walle walle = new Walle(storage);
+        assertEquals("Oops — task number 5 is out of range. Use 'list' to see valid task numbers.\n"
+                + "(Command 3 of 3 failed, so none of them were applied.)",
+                walle.getResponse("todo a; mark 1; mark 5"));
+        assertEquals("(You have no task available now)", walle.getResponse("list"));
+        assertEquals(0, storage.saves + storage.appends);
+
+        String response = walle.getResponse("todo a ; todo b;; mark 2");
+        assertTrue(response.endsWith("Nice! I've marked this task as done:\n  [T][X] b"));
+        assertEquals(0, storage.saves);
+        assertEquals(3, storage.appends);
+        assertEquals(1, storage.batches);
+        assertEquals("[[T][ ] a, [T][X] b]", storage.load().toString());
+
+        walle.getResponse("begin");
+        walle.getResponse("todo c; todo d");
+        assertEquals("Bye. Hope to see you again soon!\n"
+                + "(The open transaction was not committed, so it was rolled back.)", walle.getResponse("bye"));
+        assertEquals("[[T][ ] a, [T][X] b]", storage.load().toString());
+    }
+
+    @Test
+    void pipelines_semicolonInDescriptionKept() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage();
+        Walle walle = new Walle(storage);
+        walle.getResponse("todo buy milk; eggs");
+        walle.getResponse("deadline pay rent; water /by 2019-10-15 1800; mark 2");
+
+        assertEquals("[[T][ ] buy milk; eggs, [D][X] pay rent; water (by: Oct 15 2019 18:00)]",
+                storage.load().toString());
+    }
+
+    /** Fails the next write, then behaves like {@link InMemoryStorage}. */
+    private static final class FailingWriteStorage implements Storage {
+        private final InMemoryStorage tasks = new InMemoryStorage();
+        private boolean failNextWrite;
+
+        private void failIfDue() throws WalleException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                throw new WalleException("Oops — disk full.");
+            }
+        }
+
+        @Override
+        public ArrayList<Task> load() {
+            return tasks.load();
+        }
+
+        @Override
+        public void save(List<Task> list) throws WalleException {
+            failIfDue();
+            tasks.save(list);
+        }
+
+        @Override
+        public void appendAdd(Task t) throws WalleException {
+            failIfDue();
+            tasks.appendAdd(t);
+        }
+
+        @Override
+        public void appendInsert(int idx1Based, Task t) throws WalleException {
+            failIfDue();
+            tasks.appendInsert(idx1Based, t);
+        }
+
+        @Override
+        public void appendDelete(int idx1Based) throws WalleException {
+            failIfDue();
+            tasks.appendDelete(idx1Based);
+        }
+
+        @Override
+        public void appendMark(int idx1Based) throws WalleException {
+            failIfDue();
+            tasks.appendMark(idx1Based);
+        }
+
+        @Override
+        public void appendUnmark(int idx1Based) throws WalleException {
+            failIfDue();
+            tasks.appendUnmark(idx1Based);
+        }
+    }
+
+    @Test
+    void commit_writeFails_transactionStaysOpen() throws Exception {
+        FailingWriteStorage storage = new FailingWriteStorage();
+        Walle walle = new Walle(storage);
+        walle.getResponse("begin");
+        walle.getResponse("todo read book");
+
+        storage.failNextWrite = true;
+        assertEquals("Oops — disk full.\n(The transaction is still open; commit again or roll back.)",
+                walle.getResponse("commit"));
+        assertEquals("Oops — a transaction is already open. Use commit or rollback first.",
+                walle.getResponse("begin"));
+        assertEquals("[]", storage.load().toString());
+
+        assertEquals("Committed 1 changes.", walle.getResponse("commit"));
+        assertEquals("[[T][ ] read book]", storage.load().toString());
+        assertEquals("Undid 1 changes made together.", walle.getResponse("undo"));
+        assertEquals("[]", storage.load().toString());
+    }
+
+    @Test
+    void pipelines_writeFails_nothingApplied() throws Exception {
+        FailingWriteStorage storage = new FailingWriteStorage();
+        Walle walle = new Walle(storage);
+        storage.failNextWrite = true;
+        assertEquals("Oops — disk full.\n(Saving failed, so none of the commands were applied.)",
+                walle.getResponse("todo a; todo b"));
+        assertEquals("(You have no task available now)", walle.getResponse("list"));
+        assertEquals("Started a transaction. Changes are saved on commit, or dropped on rollback.",
+                walle.getResponse("begin"));
+    }
+
+    /** Asks for one compaction and keeps the list it is given. */
+    private static final class CompactingStorage extends InMemoryStorage {
+        private List<Task> compacted;
+
+        @Override
+        public boolean needsCompaction() {
+            return compacted == null;
+        }
+
+        @Override
+        public boolean compactAsync(List<Task> tasks) {
+            compacted = tasks;
+            return true;
+        }
+    }
+
+    @Test
+    void compaction_getsSnapshotThatLaterCommandsLeaveAlone() throws Exception {
+        CompactingStorage storage = new CompactingStorage();
+        storage.appendAdd(new Todo("read book"));
+        Walle walle = new Walle(storage);
+
+        walle.getResponse("mark 1");
+        walle.getResponse("todo sleep");
+        assertEquals("[[T][ ] read book]", storage.compacted.toString());
+        assertEquals("[[T][X] read book, [T][ ] sleep]", storage.load().toString());
+    }
+}